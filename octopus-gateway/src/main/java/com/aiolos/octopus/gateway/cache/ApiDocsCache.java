@@ -0,0 +1,176 @@
+package com.aiolos.octopus.gateway.cache;
+
+import com.aiolos.octopus.gateway.discovery.ServiceInstancesChangedEvent;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 接口文档缓存
+ * 缓存改写后的各服务 api-docs 与聚合的 swagger-config，同时保存 gzip 压缩版本与强 ETag，
+ * 客户端携带 If-None-Match 时直接返回 304，刷新文档页面不再逐个访问服务提供方
+ * api-docs 按服务实例集合（地址与元数据）的修订号缓存，实例变更事件到达时修订号变化的条目失效；swagger-config 由 ApiDocsHealthProber 在健康服务列表变化时重建
+ */
+@Slf4j
+@Component
+public class ApiDocsCache {
+
+    /**
+     * 超过该大小的文档不缓存
+     */
+    public static final int MAX_DOCUMENT_BYTES = 16 * 1024 * 1024;
+
+    @Resource
+    private DiscoveryClient discoveryClient;
+
+    private final Map<String, Document> apiDocs = new ConcurrentHashMap<>();
+
+    private volatile Document swaggerConfig;
+
+    public Document getApiDocs(String serviceId) {
+        return apiDocs.get(serviceId);
+    }
+
+    /**
+     * 缓存改写后的 api-docs
+     *
+     * @param revision 开始请求时的实例修订号，与当前修订号不一致说明请求期间实例发生变更，不缓存
+     */
+    public void putApiDocs(String serviceId, String revision, byte[] body) {
+        if (body.length == 0 || body.length > MAX_DOCUMENT_BYTES || !revision.equals(revision(serviceId))) {
+            return;
+        }
+        apiDocs.put(serviceId, Document.of(revision, body));
+    }
+
+    public Document getSwaggerConfig() {
+        return swaggerConfig;
+    }
+
+    public Document putSwaggerConfig(byte[] body) {
+        Document document = Document.of("", body);
+        this.swaggerConfig = document;
+        return document;
+    }
+
+    /**
+     * 服务实例集合的修订号，由排序后的实例地址与元数据计算
+     */
+    public String revision(String serviceId) {
+        List<String> instances = new ArrayList<>();
+        try {
+            List<ServiceInstance> serviceInstances = discoveryClient.getInstances(serviceId);
+            if (serviceInstances != null) {
+                for (ServiceInstance instance : serviceInstances) {
+                    Map<String, String> metadata = instance.getMetadata() == null
+                            ? Collections.emptyMap() : new TreeMap<>(instance.getMetadata());
+                    instances.add(instance.getHost() + ":" + instance.getPort() + metadata);
+                }
+            }
+        } catch (Exception e) {
+            log.error("获取服务实例失败, serviceId={}", serviceId, e);
+        }
+        Collections.sort(instances);
+        return sha256(String.join("\n", instances).getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    @EventListener
+    public void onInstancesChanged(ServiceInstancesChangedEvent event) {
+        if (event.isAllServices()) {
+            apiDocs.keySet().forEach(this::revalidate);
+        } else {
+            revalidate(event.getServiceId());
+        }
+    }
+
+    private void revalidate(String serviceId) {
+        Document document = apiDocs.get(serviceId);
+        if (document != null && !document.revision().equals(revision(serviceId))) {
+            apiDocs.remove(serviceId, document);
+            log.info("服务实例已变更, 清除接口文档缓存: {}", serviceId);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 缓存的文档
+     *
+     * @param revision 生成文档时的实例修订号
+     * @param body     原始内容
+     * @param gzipBody 预压缩内容
+     * @param etag     原始内容的强 ETag，gzip 版本使用带 -gzip 后缀的 ETag
+     */
+    public record Document(String revision, byte[] body, byte[] gzipBody, String etag) {
+
+        static Document of(String revision, byte[] body) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Document(revision, body, compressed.toByteArray(), "\"" + sha256(body).substring(0, 32) + "\"");
+        }
+
+        /**
+         * 写出文档，客户端接受 gzip 时写出预压缩内容，ETag 未变化时返回 304
+         */
+        public Mono<Void> write(ServerWebExchange exchange) {
+            ServerHttpResponse response = exchange.getResponse();
+            HttpHeaders headers = response.getHeaders();
+            boolean gzip = acceptsGzip(exchange.getRequest().getHeaders());
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+            headers.setCacheControl("no-cache");
+            String variantEtag = gzip ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag;
+            if (exchange.checkNotModified(variantEtag)) {
+                return response.setComplete();
+            }
+            byte[] bytes = gzip ? gzipBody : body;
+            if (gzip) {
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            headers.setContentLength(bytes.length);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(bytes)));
+        }
+
+        private static boolean acceptsGzip(HttpHeaders headers) {
+            for (String value : headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+                if (value.contains("gzip")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.aiolos.octopus.gateway.cache;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 限流封禁本地缓存
+ * 以限流键（rate-limit:path:ip）记录封禁到期时间，封禁期内的请求直接在网关拒绝，不再访问 Redis
+ * 开启广播时订阅 Redis 频道 rate-limit:ban，其他网关实例产生的封禁也会同步到本地
+ */
+@Slf4j
+@Component
+public class LocalBanCache {
+
+    /**
+     * 封禁事件频道，与 lua/rate_limit.lua 中 PUBLISH 的频道保持一致
+     */
+    public static final String BAN_CHANNEL = "rate-limit:ban";
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    @Resource
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final Map<String, Long> bans = new ConcurrentHashMap<>();
+
+    private Disposable subscription;
+
+    @PostConstruct
+    public void subscribe() {
+        GatewayRateLimitProperties.LocalBan config = rateLimitProperties.getLocalBan();
+        if (!config.isEnabled() || !config.isBroadcast()) {
+            return;
+        }
+        subscription = reactiveStringRedisTemplate.listenToChannel(BAN_CHANNEL)
+                .doOnNext(message -> onBanMessage(message.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("封禁频道订阅异常, 准备重连: {}", signal.failure().toString())))
+                .subscribe();
+        log.info("已订阅限流封禁频道: {}", BAN_CHANNEL);
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * 查询是否处于封禁期，过期条目顺带清理
+     */
+    public boolean isBanned(String key) {
+        Long expireAtMillis = bans.get(key);
+        if (expireAtMillis == null) {
+            return false;
+        }
+        if (expireAtMillis <= System.currentTimeMillis()) {
+            bans.remove(key, expireAtMillis);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 记录封禁
+     *
+     * @param ttlMillis 剩余封禁毫秒数，以 Redis 中的锁键 TTL 为准
+     */
+    public void ban(String key, long ttlMillis) {
+        GatewayRateLimitProperties.LocalBan config = rateLimitProperties.getLocalBan();
+        if (!config.isEnabled() || ttlMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (bans.size() >= config.getMaxEntries() && !bans.containsKey(key)) {
+            bans.values().removeIf(expireAtMillis -> expireAtMillis <= now);
+            if (bans.size() >= config.getMaxEntries()) {
+                // 容量打满时不再写入，未缓存的客户端仍由 Redis 中的锁键拦截
+                return;
+            }
+        }
+        bans.merge(key, now + ttlMillis, Math::max);
+    }
+
+    public int size() {
+        return bans.size();
+    }
+
+    /**
+     * 消息格式：限流键 + 空格 + 封禁毫秒数
+     */
+    private void onBanMessage(String message) {
+        int separator = message.lastIndexOf(' ');
+        if (separator <= 0) {
+            return;
+        }
+        ban(message.substring(0, separator), NumberUtils.toLong(message.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,137 @@
+package com.aiolos.octopus.gateway.cache;
+
+import com.aiolos.octopus.gateway.config.GatewayIdentityProperties;
+import com.aiolos.octopus.gateway.util.JwtUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验 token 缓存
+ * 以 token 的 SHA-256 摘要为键，缓存解析出的 userId 直到 token 过期；
+ * JWT 与 RPC 均校验失败的 token 做短时负缓存，避免重放的坏 token 反复验签和打 RPC
+ * 命中、未命中、淘汰次数通过 Micrometer 暴露为 gateway.token.cache 指标
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final GatewayIdentityProperties.TokenCache config;
+
+    private final Cache<String, Entry> cache;
+
+    public VerifiedTokenCache(GatewayIdentityProperties gatewayIdentityProperties) {
+        this.config = gatewayIdentityProperties.getTokenCache();
+        // 条目按各自的过期时间失效，这里的写入过期只是兜底上限
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(JwtUtil.ACCESS_TOKEN_EXPIRE_MILLIS, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    public void bindMetrics() {
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "gateway.token.cache");
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @return 未命中或已过期时返回 null
+     */
+    public Entry get(String token) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        String key = digest(token);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.expireAtMillis <= System.currentTimeMillis()) {
+            cache.invalidate(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存校验通过的 token
+     *
+     * @param expireAtMillis token 的 exp，RPC 校验的 token 使用配置的缓存时间
+     */
+    public void putVerified(String token, long userId, long expireAtMillis) {
+        if (config.isEnabled() && expireAtMillis > System.currentTimeMillis()) {
+            cache.put(digest(token), new Entry(userId, expireAtMillis));
+        }
+    }
+
+    /**
+     * 缓存 RPC 校验通过的 token
+     */
+    public void putRpcVerified(String token, long userId) {
+        putVerified(token, userId, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getRpcResultTtlSeconds()));
+    }
+
+    /**
+     * 负缓存校验失败的 token
+     */
+    public void putInvalid(String token) {
+        if (config.isEnabled() && config.getNegativeTtlSeconds() > 0) {
+            long expireAtMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getNegativeTtlSeconds());
+            cache.put(digest(token), new Entry(null, expireAtMillis));
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private String digest(String token) {
+        MessageDigest digest = SHA_256.get();
+        byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    /**
+     * 缓存条目，userId 为空表示负缓存
+     */
+    public static final class Entry {
+
+        private final Long userId;
+
+        private final long expireAtMillis;
+
+        private Entry(Long userId, long expireAtMillis) {
+            this.userId = userId;
+            this.expireAtMillis = expireAtMillis;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public boolean isValid() {
+            return userId != null;
+        }
+    }
+}
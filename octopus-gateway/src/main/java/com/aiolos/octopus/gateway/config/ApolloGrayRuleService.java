@@ -1,20 +1,25 @@
 package com.aiolos.octopus.gateway.config;
 
 import com.ctrip.framework.apollo.Config;
+import com.ctrip.framework.apollo.ConfigChangeListener;
 import com.ctrip.framework.apollo.ConfigService;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 /**
  * Apollo 灰度规则服务
  * 读取 Apollo 配置并实时决策是否命中用户画像ES灰度
+ * 配置变更时由 ConfigChangeListener 重新编译为不可变快照，请求路径上不再解析配置
  */
 @Slf4j
 @Component
@@ -77,45 +82,53 @@ public class ApolloGrayRuleService {
      */
     private static final String KEY_NAMESPACE = "gateway.es.gray.apollo-namespace";
 
+    private final ConfigChangeListener changeListener = changeEvent -> reload();
+
+    private volatile Config activeConfig;
+
+    private volatile GrayRuleSnapshot snapshot = GrayRuleSnapshot.DISABLED;
+
+    /**
+     * 启动时编译规则，并监听 application 与业务命名空间的变更
+     * application 中的命名空间配置变化时切换监听目标
+     */
+    @PostConstruct
+    public void init() {
+        ConfigService.getAppConfig().addChangeListener(changeListener);
+        reload();
+    }
+
+    /**
+     * 计算当前请求的灰度决策
+     * 读取不可变规则快照，评估过程不创建对象
+     */
+    public GrayDecision decide(String serviceId, String path, Long userId) {
+        GrayRuleSnapshot current = snapshot;
+        if (!current.inScope(serviceId, path)) {
+            return GrayDecision.OUT_OF_SCOPE;
+        }
+        return current.hit(userId) ? current.hitDecision : GrayDecision.MISS;
+    }
+
     /**
      * 是否命中灰度
      */
     public boolean hitEsGray(Long userId) {
-        Config config = resolveConfig();
-        if (!config.getBooleanProperty(KEY_ENABLED, false)) {
-            return false;
-        }
-        // 配置了强制按实例标签灰度时，直接命中灰度
-        if (config.getBooleanProperty(KEY_FORCE_GRAY_BY_INSTANCE_TAG, false)
-                && StringUtils.isNotBlank(config.getProperty(KEY_INSTANCE_TAG, ""))) {
-            return true;
-        }
-        if (userId != null && parseLongSet(config.getProperty(KEY_USER_IDS, "")).contains(userId)) {
-            return true;
-        }
-        int percent = normalizePercent(config.getIntProperty(KEY_PERCENT, 0));
-        if (percent <= 0 || userId == null) {
-            return false;
-        }
-        long hash = Math.abs(userId % 100);
-        return hash < percent;
+        return snapshot.hit(userId);
     }
 
     /**
      * 获取目标实例标签
      */
     public String getGrayInstanceTag() {
-        return StringUtils.trimToNull(resolveConfig().getProperty(KEY_INSTANCE_TAG, ""));
+        return snapshot.instanceTag;
     }
 
     /**
      * 获取实例标签元数据键名
      */
     public String getGrayInstanceMetaKey() {
-        return StringUtils.defaultIfBlank(
-                StringUtils.trimToNull(resolveConfig().getProperty(KEY_INSTANCE_META_KEY, "")),
-                "gray-tag"
-        );
+        return snapshot.instanceMetaKey;
     }
 
     /**
@@ -123,28 +136,30 @@ public class ApolloGrayRuleService {
      * 通过 Apollo 配置驱动服务和路径匹配范围
      */
     public boolean shouldMarkEsGray(String serviceId, String path) {
+        return snapshot.inScope(serviceId, path);
+    }
+
+    private synchronized void reload() {
         Config config = resolveConfig();
-        if (!config.getBooleanProperty(KEY_ENABLED, false)) {
-            return false;
-        }
-        Set<String> services = parseStringSet(config.getProperty(KEY_MATCH_SERVICES, ""));
-        if (!services.isEmpty() && !services.contains(StringUtils.defaultString(serviceId).toLowerCase())) {
-            return false;
-        }
-        Set<String> pathPatterns = parseStringSet(config.getProperty(KEY_MATCH_PATHS, ""));
-        if (pathPatterns.isEmpty()) {
-            return true;
-        }
-        String normalizedPath = StringUtils.defaultString(path).trim().toLowerCase();
-        for (String pattern : pathPatterns) {
-            String normalizedPattern = StringUtils.defaultString(pattern).trim().toLowerCase();
-            if (normalizedPath.equals(normalizedPattern)
-                    || normalizedPath.startsWith(normalizedPattern)
-                    || normalizedPath.endsWith(normalizedPattern)) {
-                return true;
+        Config previous = activeConfig;
+        if (config != previous) {
+            if (previous != null && previous != ConfigService.getAppConfig()) {
+                previous.removeChangeListener(changeListener);
+            }
+            if (config != ConfigService.getAppConfig()) {
+                config.addChangeListener(changeListener);
             }
+            activeConfig = config;
         }
-        return false;
+        apply(config);
+        log.info("灰度规则已重建, enabled={}, instanceTag={}", snapshot.enabled, snapshot.instanceTag);
+    }
+
+    /**
+     * 编译并替换规则快照，测试与基准测试直接传入配置，不经过 ConfigService
+     */
+    void apply(Config config) {
+        snapshot = GrayRuleSnapshot.compile(config);
     }
 
     private Config resolveConfig() {
@@ -161,39 +176,131 @@ public class ApolloGrayRuleService {
         }
     }
 
-    private int normalizePercent(Integer percent) {
-        if (percent == null) {
-            return 0;
+    /**
+     * 编译后的灰度规则快照
+     * 用户ID使用有序 long 数组二分查找，服务名使用忽略大小写的有序集合，路径按忽略大小写的前缀、后缀比较
+     */
+    private static final class GrayRuleSnapshot {
+
+        private static final GrayRuleSnapshot DISABLED = new GrayRuleSnapshot();
+
+        private boolean enabled;
+
+        private boolean forceGray;
+
+        private long[] userIds = new long[0];
+
+        private int percent;
+
+        private Set<String> services = Collections.emptySet();
+
+        private String[] pathPatterns = new String[0];
+
+        private String instanceTag;
+
+        private String instanceMetaKey = "gray-tag";
+
+        private GrayDecision hitDecision = new GrayDecision(true, true, null);
+
+        private static GrayRuleSnapshot compile(Config config) {
+            GrayRuleSnapshot snapshot = new GrayRuleSnapshot();
+            snapshot.enabled = config.getBooleanProperty(KEY_ENABLED, false);
+            snapshot.instanceTag = StringUtils.trimToNull(config.getProperty(KEY_INSTANCE_TAG, ""));
+            snapshot.instanceMetaKey = StringUtils.defaultIfBlank(
+                    StringUtils.trimToNull(config.getProperty(KEY_INSTANCE_META_KEY, "")),
+                    "gray-tag"
+            );
+            // 配置了强制按实例标签灰度时，直接命中灰度
+            snapshot.forceGray = config.getBooleanProperty(KEY_FORCE_GRAY_BY_INSTANCE_TAG, false)
+                    && snapshot.instanceTag != null;
+            snapshot.userIds = parseLongArray(config.getProperty(KEY_USER_IDS, ""));
+            snapshot.percent = normalizePercent(config.getIntProperty(KEY_PERCENT, 0));
+            Set<String> services = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            services.addAll(parseStringList(config.getProperty(KEY_MATCH_SERVICES, "")));
+            snapshot.services = services;
+            snapshot.pathPatterns = parseStringList(config.getProperty(KEY_MATCH_PATHS, "")).toArray(new String[0]);
+            snapshot.hitDecision = new GrayDecision(true, true, snapshot.instanceTag);
+            return snapshot;
+        }
+
+        private boolean hit(Long userId) {
+            if (!enabled) {
+                return false;
+            }
+            if (forceGray) {
+                return true;
+            }
+            if (userId == null) {
+                return false;
+            }
+            long id = userId;
+            if (Arrays.binarySearch(userIds, id) >= 0) {
+                return true;
+            }
+            if (percent <= 0) {
+                return false;
+            }
+            long hash = Math.abs(id % 100);
+            return hash < percent;
         }
-        return Math.max(0, Math.min(100, percent));
-    }
 
-    private Set<Long> parseLongSet(String raw) {
-        if (StringUtils.isBlank(raw)) {
-            return Collections.emptySet();
+        private boolean inScope(String serviceId, String path) {
+            if (!enabled) {
+                return false;
+            }
+            if (!services.isEmpty() && (serviceId == null || !services.contains(serviceId))) {
+                return false;
+            }
+            if (pathPatterns.length == 0) {
+                return true;
+            }
+            String normalizedPath = StringUtils.defaultString(path);
+            int length = normalizedPath.length();
+            for (String pattern : pathPatterns) {
+                int patternLength = pattern.length();
+                // 前缀匹配已包含完全相等的情况
+                if (normalizedPath.regionMatches(true, 0, pattern, 0, patternLength)
+                        || (length >= patternLength
+                        && normalizedPath.regionMatches(true, length - patternLength, pattern, 0, patternLength))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int normalizePercent(Integer percent) {
+            if (percent == null) {
+                return 0;
+            }
+            return Math.max(0, Math.min(100, percent));
+        }
+
+        private static long[] parseLongArray(String raw) {
+            return parseStringList(raw).stream()
+                    .map(item -> {
+                        try {
+                            return Long.parseLong(item);
+                        } catch (NumberFormatException e) {
+                            return null;
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .mapToLong(Long::longValue)
+                    .distinct()
+                    .sorted()
+                    .toArray();
         }
-        return Arrays.stream(raw.split(","))
-                .map(String::trim)
-                .filter(StringUtils::isNotBlank)
-                .map(item -> {
-                    try {
-                        return Long.parseLong(item);
-                    } catch (NumberFormatException e) {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-    }
 
-    private Set<String> parseStringSet(String raw) {
-        if (StringUtils.isBlank(raw)) {
-            return Collections.emptySet();
+        private static List<String> parseStringList(String raw) {
+            if (StringUtils.isBlank(raw)) {
+                return Collections.emptyList();
+            }
+            return Arrays.stream(raw.split(","))
+                    .map(String::trim)
+                    .filter(StringUtils::isNotBlank)
+                    .map(String::toLowerCase)
+                    .distinct()
+                    .collect(Collectors.toList());
         }
-        return Arrays.stream(raw.split(","))
-                .map(String::trim)
-                .filter(StringUtils::isNotBlank)
-                .map(String::toLowerCase)
-                .collect(Collectors.toSet());
     }
 }
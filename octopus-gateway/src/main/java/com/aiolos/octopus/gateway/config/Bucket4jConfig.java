@@ -1,25 +1,57 @@
 package com.aiolos.octopus.gateway.config;
 
-import io.github.bucket4j.distributed.proxy.ProxyManager;
+import com.aiolos.octopus.gateway.ratelimit.AsyncBucketProxyPool;
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.AsyncProxyManager;
 import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
+import io.lettuce.core.AbstractRedisClient;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
 import io.lettuce.core.codec.ByteArrayCodec;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class Bucket4jConfig {
 
-    @Bean
-    public ProxyManager<byte[]> proxyManager(LettuceConnectionFactory lettuceConnectionFactory) {
-        RedisClient redisClient = (RedisClient) lettuceConnectionFactory.getNativeClient();
-        StatefulRedisConnection<byte[], byte[]> connection = redisClient.connect(ByteArrayCodec.INSTANCE);
-        return LettuceBasedProxyManager.builderFor(connection)
-                .withExpirationStrategy(io.github.bucket4j.distributed.ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ofSeconds(60)))
-                .build();
+    /**
+     * 秒杀令牌桶使用独立的连接池，不与其他 Redis 访问共享连接
+     * 同时支持单机（含哨兵）与集群部署
+     */
+    @Bean(destroyMethod = "close")
+    public AsyncBucketProxyPool asyncBucketProxyPool(LettuceConnectionFactory lettuceConnectionFactory,
+                                                     GatewayRateLimitProperties rateLimitProperties) {
+        AbstractRedisClient nativeClient = lettuceConnectionFactory.getNativeClient();
+        int size = Math.max(1, rateLimitProperties.getSeckill().getConnections());
+        List<StatefulConnection<byte[], byte[]>> connections = new ArrayList<>(size);
+        List<AsyncProxyManager<byte[]>> proxyManagers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LettuceBasedProxyManager.LettuceBasedProxyManagerBuilder<byte[]> builder;
+            if (nativeClient instanceof RedisClusterClient clusterClient) {
+                StatefulRedisClusterConnection<byte[], byte[]> connection = clusterClient.connect(ByteArrayCodec.INSTANCE);
+                connections.add(connection);
+                builder = LettuceBasedProxyManager.builderFor(connection);
+            } else if (nativeClient instanceof RedisClient redisClient) {
+                StatefulRedisConnection<byte[], byte[]> connection = redisClient.connect(ByteArrayCodec.INSTANCE);
+                connections.add(connection);
+                builder = LettuceBasedProxyManager.builderFor(connection);
+            } else {
+                throw new IllegalStateException("秒杀令牌桶不支持的 Redis 客户端类型: "
+                        + (nativeClient == null ? null : nativeClient.getClass().getName()));
+            }
+            proxyManagers.add(builder
+                    .withExpirationStrategy(ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ofSeconds(60)))
+                    .build()
+                    .asAsync());
+        }
+        return new AsyncBucketProxyPool(proxyManagers, connections);
     }
 }
@@ -0,0 +1,27 @@
+package com.aiolos.octopus.gateway.config;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "api-docs-probe")
+public class GatewayApiDocsProbeProperties {
+
+    @Schema(description = "是否探测服务接口文档，关闭后注册中心中的服务全部列入文档页面")
+    private boolean enabled = true;
+
+    @Schema(description = "探测间隔（秒），修改后需重启生效")
+    private long intervalSeconds = 15;
+
+    @Schema(description = "单个实例的探测超时时间（毫秒）")
+    private long timeoutMillis = 2000;
+
+    @Schema(description = "同时探测的服务数上限")
+    private int concurrency = 8;
+
+    @Schema(description = "探测路径")
+    private String path = "/v3/api-docs";
+}
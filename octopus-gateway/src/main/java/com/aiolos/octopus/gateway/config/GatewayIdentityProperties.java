@@ -0,0 +1,66 @@
+package com.aiolos.octopus.gateway.config;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "identity")
+public class GatewayIdentityProperties {
+
+    private Rpc rpc = new Rpc();
+
+    private TokenCache tokenCache = new TokenCache();
+
+    private AnonymousCookie anonymousCookie = new AnonymousCookie();
+
+    @Data
+    public static class Rpc {
+        @Schema(description = "单次身份RPC的超时时间（毫秒）")
+        private long timeoutMillis = 300;
+        @Schema(description = "同时在途的身份RPC上限，超出后直接降级")
+        private int maxInFlight = 256;
+        @Schema(description = "RPC超时、失败或在途数超限时的降级策略")
+        private DegradePolicy degradePolicy = DegradePolicy.FAIL_OPEN;
+    }
+
+    @Data
+    public static class TokenCache {
+        @Schema(description = "是否启用已校验 token 缓存")
+        private boolean enabled = true;
+        @Schema(description = "最大缓存条目数，修改后需重启生效")
+        private long maximumSize = 100_000;
+        @Schema(description = "RPC 校验通过的 token 缓存时间（秒），JWT 校验通过的按 exp 过期")
+        private long rpcResultTtlSeconds = 60;
+        @Schema(description = "JWT 与 RPC 均校验失败的 token 负缓存时间（秒）")
+        private long negativeTtlSeconds = 30;
+    }
+
+    @Data
+    public static class AnonymousCookie {
+        @Schema(description = "是否下发签名的匿名身份 cookie，命中后不再调用 getOrCreateAnonymousId")
+        private boolean enabled = true;
+        @Schema(description = "匿名身份 cookie 名称")
+        private String name = "anonymous-identity";
+        @Schema(description = "匿名身份 cookie 有效期（天）")
+        private int maxAgeDays = 7;
+        @Schema(description = "HMAC 签名密钥，每个至少 32 字节；第一个用于签名，全部用于校验，轮换时把新密钥放在最前，旧密钥保留 max-age-days 后移除")
+        private List<String> secrets = new ArrayList<>();
+    }
+
+    public enum DegradePolicy {
+        /**
+         * 放行：token 校验按未登录处理，匿名接口不下发匿名 userId
+         */
+        FAIL_OPEN,
+        /**
+         * 拒绝：直接返回 503
+         */
+        FAIL_CLOSED
+    }
+}
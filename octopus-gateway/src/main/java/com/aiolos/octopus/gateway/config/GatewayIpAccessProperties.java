@@ -0,0 +1,24 @@
+package com.aiolos.octopus.gateway.config;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ip-access")
+public class GatewayIpAccessProperties {
+
+    @Schema(description = "是否开启 IP 黑名单与限流豁免")
+    private boolean enabled = true;
+
+    @Schema(description = "拒绝访问的地址或网段，如 203.0.113.0/24、2001:db8::/32")
+    private List<String> deny = new ArrayList<>();
+
+    @Schema(description = "跳过限流的地址或网段，如内部监控；与 deny 重叠时更具体（前缀更长）的网段生效")
+    private List<String> exempt = new ArrayList<>();
+}
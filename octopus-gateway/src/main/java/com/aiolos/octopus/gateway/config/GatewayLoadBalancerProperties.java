@@ -0,0 +1,50 @@
+package com.aiolos.octopus.gateway.config;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "load-balancer")
+public class GatewayLoadBalancerProperties {
+
+    @Schema(description = "未命中灰度标签时的实例选择策略")
+    private Strategy strategy = Strategy.P2C_EWMA;
+
+    @Schema(description = "响应时间 EWMA 的衰减时间常数（毫秒），越小越偏向最近的响应")
+    private long decayMillis = 10_000;
+
+    @Schema(description = "超过该时间（秒）没有请求的实例统计被清理")
+    private long idleSeconds = 600;
+
+    private Outlier outlier = new Outlier();
+
+    @Data
+    public static class Outlier {
+        @Schema(description = "是否摘除异常实例")
+        private boolean enabled = true;
+        @Schema(description = "连续失败（5xx 或连接异常）达到该次数时摘除")
+        private int consecutiveErrors = 5;
+        @Schema(description = "响应时间 EWMA 超过该值（毫秒）时摘除，0 表示不按响应时间摘除")
+        private long latencyThresholdMillis = 3000;
+        @Schema(description = "按响应时间摘除前至少需要的样本数")
+        private int minSamples = 20;
+        @Schema(description = "摘除时长（秒），到期后清空统计重新接收流量")
+        private long ejectionSeconds = 30;
+        @Schema(description = "同一服务最多摘除的实例比例（百分比）")
+        private int maxEjectionPercent = 50;
+    }
+
+    public enum Strategy {
+        /**
+         * 随机取两个实例，选择 响应时间 EWMA * (在途请求数 + 1) 较小的一个
+         */
+        P2C_EWMA,
+        /**
+         * 轮询
+         */
+        ROUND_ROBIN
+    }
+}
@@ -13,6 +13,18 @@ import java.util.List;
 public class GatewayRateLimitProperties {
     
     private List<ServiceConfig> services;
+
+    private LocalBan localBan = new LocalBan();
+
+    private Seckill seckill = new Seckill();
+
+    private Batch batch = new Batch();
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private ClientIp clientIp = new ClientIp();
+
+    private HeavyHitter heavyHitter = new HeavyHitter();
     
     @Data
     public static class ServiceConfig {
@@ -23,12 +35,18 @@ public class GatewayRateLimitProperties {
 
     @Data
     public static class DefaultConfig {
-        @Schema(description = "允许最大请求数")
+        @Schema(description = "允许最大请求数，未命中接口规则的路径共用一个计数，不再按请求路径分别计数")
         private int maxRequests = 100;
         @Schema(description = "时间窗口")
         private int timeWindow = 10;
         @Schema(description = "触发限流后的封禁时间")
         private int banTime = 60;
+        @Schema(description = "每次从 Redis 租借的许可数，1 表示不租借、每个请求都访问 Redis；每个网关实例每个窗口最多少放行该数量的请求，仅固定窗口算法支持")
+        private int leaseSize = 1;
+        @Schema(description = "限流算法")
+        private Algorithm algorithm = Algorithm.FIXED_WINDOW;
+        @Schema(description = "限流键的客户端标识，多个时按顺序取第一个能解析出的标识，都无法解析时使用 IP")
+        private List<KeyType> keyResolver = List.of(KeyType.IP);
     }
 
     @Data
@@ -37,26 +55,161 @@ public class GatewayRateLimitProperties {
         private Integer maxRequests;
         private Integer timeWindow;
         private Integer banTime;
+        private Integer leaseSize;
+        private Algorithm algorithm;
+        private List<KeyType> keyResolver;
+    }
+
+    @Data
+    public static class ClientIp {
+        @Schema(description = "可信代理的地址或网段，只有来自这些地址的请求才解析转发头；为空时直接使用 TCP 对端地址")
+        private List<String> trustedProxies;
+        @Schema(description = "记录客户端地址链的请求头")
+        private String forwardedHeader = "X-Forwarded-For";
+    }
+
+    @Data
+    public static class Batch {
+        @Schema(description = "是否合并并发的限流脚本调用为一次管道写入，关闭时每条命令立即刷出")
+        private boolean enabled = true;
+        @Schema(description = "累计多少条命令立即刷出")
+        private int maxBatchSize = 64;
+        @Schema(description = "未达到批大小时最长等待多少微秒刷出")
+        private long flushWindowMicros = 100;
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        @Schema(description = "单次 Redis 限流调用超时（毫秒），超时计为失败")
+        private long timeoutMillis = 50;
+        @Schema(description = "失败率阈值（百分比），达到后熔断")
+        private float failureRateThreshold = 50;
+        @Schema(description = "慢调用阈值（毫秒）")
+        private long slowCallDurationMillis = 20;
+        @Schema(description = "慢调用比例阈值（百分比），达到后熔断")
+        private float slowCallRateThreshold = 80;
+        @Schema(description = "统计窗口内的调用次数")
+        private int slidingWindowSize = 100;
+        @Schema(description = "开始计算失败率所需的最少调用次数")
+        private int minimumNumberOfCalls = 20;
+        @Schema(description = "熔断持续时间（毫秒），之后进入半开状态探测")
+        private long waitInOpenStateMillis = 5000;
+        @Schema(description = "半开状态允许的探测调用次数")
+        private int permittedCallsInHalfOpenState = 10;
     }
 
-    // 查找服务配置的辅助方法
-    public ServiceConfig findServiceConfig(String serviceId) {
-        return services.stream()
-                .filter(service -> service.getId().equals(serviceId))
-                .findFirst()
-                .orElse(null);
+    public enum Algorithm {
+        /**
+         * 固定窗口，窗口边界处可能出现 2 倍突发
+         */
+        FIXED_WINDOW,
+        /**
+         * GCRA，单键保存理论到达时间，匀速放行
+         */
+        GCRA,
+        /**
+         * 滑动窗口计数器，按上一窗口重叠比例加权估算
+         */
+        SLIDING_WINDOW
     }
 
-    // 查找接口配置的辅助方法
-    public InterfaceConfig findInterfaceConfig(String serviceId, String requestPath) {
-        ServiceConfig serviceConfig = findServiceConfig(serviceId);
-        if (serviceConfig == null || serviceConfig.getInterfaces() == null) {
-            return null;
+    @Data
+    public static class HeavyHitter {
+        @Schema(description = "是否统计热点限流键与路由")
+        private boolean enabled = true;
+        @Schema(description = "Count-Min Sketch 行数，修改后重启生效")
+        private int depth = 4;
+        @Schema(description = "Count-Min Sketch 每行计数器数，修改后重启生效")
+        private int width = 4096;
+        @Schema(description = "保留明细的热点键数量，修改后重启生效")
+        private int capacity = 100;
+        @Schema(description = "计数减半的间隔（秒）")
+        private int decaySeconds = 60;
+        @Schema(description = "是否对请求数超过阈值的热点限流键自动本地封禁，以候选键的精确计数判定，不使用估算值")
+        private boolean autoBan = false;
+        @Schema(description = "自动封禁阈值，为一个衰减周期内的精确请求数")
+        private long autoBanThreshold = 10000;
+        @Schema(description = "自动封禁时间（秒）")
+        private int autoBanSeconds = 300;
+    }
+
+    public enum KeyType {
+        /**
+         * 客户端 IP，经可信代理时从转发头中由右向左取第一个非可信代理地址
+         */
+        IP,
+        /**
+         * 登录用户ID，仅使用校验通过的 Bearer token，不信任客户端传入的用户请求头
+         */
+        USER,
+        /**
+         * 设备ID，由客户端上报，可被伪造，适合与 IP 组合使用
+         */
+        DEVICE
+    }
+
+    @Data
+    public static class Seckill {
+        @Schema(description = "每秒补充令牌数")
+        private int replenishRate = 500;
+        @Schema(description = "桶容量")
+        private int burstCapacity = 1000;
+        @Schema(description = "每次从令牌桶租借的令牌数，1 表示不租借")
+        private int leaseSize = 1;
+        @Schema(description = "租约有效期（毫秒），到期未用完的令牌归还令牌桶")
+        private long leaseMillis = 200;
+        @Schema(description = "令牌桶专用 Redis 连接数")
+        private int connections = 4;
+        @Schema(description = "令牌桶操作超时（毫秒）")
+        private long timeoutMillis = 100;
+        @Schema(description = "令牌桶操作超时或失败时是否放行")
+        private boolean failOpen = true;
+        @Schema(description = "排队放行的调度间隔（毫秒）")
+        private long admitIntervalMillis = 100;
+        @Schema(description = "每个活动每次调度最多放行人数")
+        private int maxAdmitPerTick = 200;
+        @Schema(description = "排队票据签名密钥，有活动开启排队时必须配置，每个至少 32 字节；第一个用于签名，其余仅用于验签以支持轮换")
+        private List<String> ticketSecrets;
+        @Schema(description = "秒杀活动，未匹配到活动的 /seckill/ 路径按路径使用单个令牌桶")
+        private List<Activity> activities;
+
+        /**
+         * 是否有活动开启了排队
+         */
+        public boolean anyQueueEnabled() {
+            return activities != null && activities.stream().anyMatch(Activity::isQueueEnabled);
         }
+    }
 
-        return serviceConfig.getInterfaces().stream()
-                .filter(o -> requestPath.contains(o.getPath()))
-                .findFirst()
-                .orElse(null);
+    @Data
+    public static class Activity {
+        @Schema(description = "活动ID，作为令牌桶键的一部分，只能包含字母、数字、下划线和中划线")
+        private String id;
+        @Schema(description = "活动路径模板，按前缀匹配请求路径，可带服务名前缀")
+        private String path;
+        @Schema(description = "活动总的每秒补充令牌数，未配置时使用 seckill.replenish-rate")
+        private Integer replenishRate;
+        @Schema(description = "活动总的桶容量，未配置时使用 seckill.burst-capacity")
+        private Integer burstCapacity;
+        @Schema(description = "分片数，容量和补充速率平均分到各分片，分片键使用不同的 hash tag 以分散到不同的集群槽位")
+        private int shards = 1;
+        @Schema(description = "本分片耗尽时最多向后续相邻分片借用的次数")
+        private int borrowAttempts = 1;
+        @Schema(description = "是否开启排队，令牌不足时发放排队票据，按令牌补充速度先进先出放行")
+        private boolean queueEnabled = false;
+        @Schema(description = "本网关观察到的最大排队人数，超过时直接拒绝")
+        private int maxQueueLength = 10000;
+        @Schema(description = "排队票据有效期（秒）")
+        private int ticketTtlSeconds = 300;
+    }
+
+    @Data
+    public static class LocalBan {
+        @Schema(description = "是否在本地缓存封禁状态，封禁期内直接拒绝而不访问 Redis")
+        private boolean enabled = true;
+        @Schema(description = "本地最多缓存的封禁条目数")
+        private int maxEntries = 100000;
+        @Schema(description = "是否通过 Redis pub/sub 向其他网关实例广播封禁事件")
+        private boolean broadcast = false;
     }
 }
@@ -0,0 +1,46 @@
+package com.aiolos.octopus.gateway.config;
+
+/**
+ * 单次请求的灰度决策
+ * 由 FeatureGrayFilter 计算一次后写入 GatewayRequestContext，后续环节直接读取，不再重复评估规则
+ * 实例均为预先构建的常量或规则快照中的共享对象，评估过程不产生新对象
+ */
+public final class GrayDecision {
+
+    /**
+     * 不在灰度范围内（总开关关闭或服务、路径未命中）
+     */
+    public static final GrayDecision OUT_OF_SCOPE = new GrayDecision(false, false, null);
+
+    /**
+     * 在灰度范围内但当前用户未命中
+     */
+    public static final GrayDecision MISS = new GrayDecision(true, false, null);
+
+    private final boolean inScope;
+
+    private final boolean hit;
+
+    private final String instanceTag;
+
+    GrayDecision(boolean inScope, boolean hit, String instanceTag) {
+        this.inScope = inScope;
+        this.hit = hit;
+        this.instanceTag = instanceTag;
+    }
+
+    public boolean isInScope() {
+        return inScope;
+    }
+
+    public boolean isHit() {
+        return hit;
+    }
+
+    /**
+     * 命中灰度时的目标实例标签，未配置时为空
+     */
+    public String getInstanceTag() {
+        return instanceTag;
+    }
+}
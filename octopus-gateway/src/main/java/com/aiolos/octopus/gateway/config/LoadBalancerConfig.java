@@ -0,0 +1,13 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.aiolos.octopus.gateway.loadbalancer.GrayLoadBalancerConfiguration;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 为所有 lb:// 服务注册灰度标签负载均衡器，未命中灰度的请求默认按实例负载二选一
+ */
+@Configuration
+@LoadBalancerClients(defaultConfiguration = GrayLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+}
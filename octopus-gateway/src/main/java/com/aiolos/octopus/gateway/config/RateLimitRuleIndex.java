@@ -0,0 +1,158 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.aiolos.octopus.gateway.ratelimit.RateLimitKeyResolver;
+import com.aiolos.octopus.gateway.ratelimit.RateLimitKeyResolvers;
+import com.aiolos.octopus.gateway.util.PathPatternTrie;
+import com.aiolos.octopus.gateway.util.PathTemplateTrie;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 限流规则索引
+ * 将 rate-limit.services 按服务预编译为不可变快照：服务级默认规则 + 接口路径模板前缀树，接口规则在构建时与默认配置合并
+ * 请求时按服务 ID 一次哈希查找、按路径段一次最长前缀匹配，不再逐条扫描配置
+ * 限流键使用命中的路径模板而不是原始路径，/item/1 与 /item/2 共享 /item/{id} 的计数，避免每个路径参数产生一个 Redis 键
+ * 未命中接口规则时使用服务默认规则，路径部分固定为 *，同一客户端在该服务下所有未单独配置的路径共用一个计数；
+ * 需要独立计数的接口应配置在 interfaces 中
+ * Nacos 配置刷新后整体重建并原子替换
+ */
+@Slf4j
+@Component
+public class RateLimitRuleIndex {
+
+    /**
+     * 未命中接口规则时限流键中的路径部分，服务内未单独配置的路径共用一个计数
+     */
+    private static final String DEFAULT_TEMPLATE = "*";
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    @Resource
+    private RateLimitKeyResolvers rateLimitKeyResolvers;
+
+    private volatile Map<String, ServiceRules> index = Collections.emptyMap();
+
+    /**
+     * 启动时以及 Nacos 配置刷新后重建索引
+     */
+    @PostConstruct
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void rebuild() {
+        List<GatewayRateLimitProperties.ServiceConfig> services = rateLimitProperties.getServices();
+        Map<String, ServiceRules> rebuilt = new HashMap<>();
+        if (services != null) {
+            for (GatewayRateLimitProperties.ServiceConfig service : services) {
+                if (service == null || StringUtils.isBlank(service.getId()) || rebuilt.containsKey(service.getId())) {
+                    continue;
+                }
+                rebuilt.put(service.getId(), compile(service));
+            }
+        }
+        this.index = Collections.unmodifiableMap(rebuilt);
+        log.info("限流规则索引已重建, services={}", rebuilt.keySet());
+    }
+
+    /**
+     * 查找请求命中的限流规则
+     * 同时匹配带服务名前缀和不带服务名前缀的路径，取匹配段数更多的接口规则，都未命中时使用服务默认规则
+     *
+     * @param serviceId 路由目标服务
+     * @param segments  {@link PathPatternTrie#tokenize(String)} 切分后的请求路径
+     * @return 服务未配置限流时返回 null
+     */
+    public Rule resolve(String serviceId, String[] segments) {
+        ServiceRules rules = index.get(serviceId);
+        if (rules == null) {
+            return null;
+        }
+        if (rules.interfaces.isEmpty()) {
+            return rules.defaultRule;
+        }
+        PathTemplateTrie.Match<Rule> match = rules.interfaces.longestMatch(segments, 0);
+        if (segments.length > 0 && segments[0].equals(serviceId)) {
+            PathTemplateTrie.Match<Rule> stripped = rules.interfaces.longestMatch(segments, 1);
+            if (stripped != null && (match == null || stripped.depth() > match.depth())) {
+                match = stripped;
+            }
+        }
+        return match != null ? match.value() : rules.defaultRule;
+    }
+
+    private ServiceRules compile(GatewayRateLimitProperties.ServiceConfig service) {
+        GatewayRateLimitProperties.DefaultConfig defaults = service.getDefaultConfig() != null
+                ? service.getDefaultConfig()
+                : new GatewayRateLimitProperties.DefaultConfig();
+        String serviceId = service.getId();
+        Rule defaultRule = new Rule(keyPrefix(serviceId, DEFAULT_TEMPLATE), defaults.getMaxRequests(),
+                defaults.getTimeWindow(), defaults.getBanTime(), defaults.getLeaseSize(), defaults.getAlgorithm(),
+                rateLimitKeyResolvers.of(defaults.getKeyResolver()));
+        PathTemplateTrie<Rule> interfaces = new PathTemplateTrie<>();
+        if (service.getInterfaces() != null) {
+            for (GatewayRateLimitProperties.InterfaceConfig config : service.getInterfaces()) {
+                if (config == null || StringUtils.isBlank(config.getPath())) {
+                    continue;
+                }
+                String template = config.getPath().trim();
+                interfaces.insert(template, new Rule(
+                        keyPrefix(serviceId, template),
+                        config.getMaxRequests() != null ? config.getMaxRequests() : defaultRule.maxRequests(),
+                        config.getTimeWindow() != null ? config.getTimeWindow() : defaultRule.timeWindow(),
+                        config.getBanTime() != null ? config.getBanTime() : defaultRule.banTime(),
+                        config.getLeaseSize() != null ? config.getLeaseSize() : defaultRule.leaseSize(),
+                        config.getAlgorithm() != null ? config.getAlgorithm() : defaultRule.algorithm(),
+                        config.getKeyResolver() != null ? rateLimitKeyResolvers.of(config.getKeyResolver()) : defaultRule.keyResolver()));
+            }
+        }
+        return new ServiceRules(defaultRule, interfaces);
+    }
+
+    /**
+     * 限流键前缀 rate-limit:&lt;service&gt;:&lt;template&gt;，完整的键为 rate-limit:&lt;service&gt;:&lt;template&gt;:&lt;ip:|user:|device:&gt;&lt;标识&gt;
+     * 模板中的 { } 替换为 &lt; &gt;，防止 Redis 集群把 {id} 当作 hash tag，使同一服务的键全部落在同一槽位
+     */
+    private static String keyPrefix(String serviceId, String template) {
+        return "rate-limit:" + serviceId + ":" + template.replace('{', '<').replace('}', '>');
+    }
+
+    private record ServiceRules(Rule defaultRule, PathTemplateTrie<Rule> interfaces) {
+    }
+
+    /**
+     * 与服务默认配置合并后的限流规则
+     *
+     * @param keyPrefix   限流键前缀，拼接 ":" 与客户端标识后即为 Redis 键
+     * @param keyResolver 客户端标识解析器
+     */
+    public record Rule(String keyPrefix, int maxRequests, int timeWindow, int banTime, int leaseSize,
+                       GatewayRateLimitProperties.Algorithm algorithm, RateLimitKeyResolver keyResolver) {
+
+        /**
+         * 生成请求的限流键
+         * 客户端标识中的 { } 同样替换为 &lt; &gt;，整个键都不含花括号，派生键的 hash tag 不会被截断
+         *
+         * @return 无法解析客户端标识时返回 null
+         */
+        public String key(ServerWebExchange exchange) {
+            String client = keyResolver.resolve(exchange);
+            if (client == null) {
+                return null;
+            }
+            if (client.indexOf('{') >= 0 || client.indexOf('}') >= 0) {
+                client = client.replace('{', '<').replace('}', '>');
+            }
+            return keyPrefix + ":" + client;
+        }
+    }
+}
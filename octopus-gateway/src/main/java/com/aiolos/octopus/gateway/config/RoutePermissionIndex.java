@@ -0,0 +1,186 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.aiolos.octopus.gateway.discovery.ServiceInstancesChangedEvent;
+import com.aiolos.octopus.gateway.util.PathPatternTrie;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 路由权限索引
+ * 将 whitelist 配置按服务预编译为路径前缀树，请求时只做一次按段查找
+ * Nacos 配置刷新后整体重建并原子替换，请求线程始终读取不可变快照
+ * 实例元数据中的 whitelist-urls / anonymous-urls 合并所有实例后单独编译，仅在实例变更事件到达时按服务重建
+ * 首次访问的服务在弹性线程池中查询注册中心构建，不占用事件循环线程；查询失败的结果不缓存，下次请求重试
+ */
+@Slf4j
+@Component
+public class RoutePermissionIndex {
+
+    /**
+     * 命中免登录白名单
+     */
+    public static final int WHITELIST = 1;
+
+    /**
+     * 命中匿名访问路径
+     */
+    public static final int ANONYMOUS = 1 << 1;
+
+    private static final int ALL = WHITELIST | ANONYMOUS;
+
+    private static final String META_WHITELIST_URLS = "whitelist-urls";
+
+    private static final String META_ANONYMOUS_URLS = "anonymous-urls";
+
+    @Resource
+    private GatewayWhitelistProperties gatewayWhitelistProperties;
+
+    @Resource
+    private DiscoveryClient discoveryClient;
+
+    private volatile Map<String, PathPatternTrie> configIndex = Collections.emptyMap();
+
+    private final Map<String, PathPatternTrie> metadataIndex = new ConcurrentHashMap<>();
+
+    // 构建中的元数据索引，同一服务并发的首次请求共享一次注册中心查询
+    private final Map<String, Mono<PathPatternTrie>> pendingBuilds = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时以及 Nacos 配置刷新后重建索引
+     */
+    @PostConstruct
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void rebuild() {
+        List<GatewayWhitelistProperties.ServiceConfig> services = gatewayWhitelistProperties.getServices();
+        Map<String, PathPatternTrie> index = new HashMap<>();
+        if (services != null) {
+            for (GatewayWhitelistProperties.ServiceConfig service : services) {
+                if (service == null || StringUtils.isBlank(service.getId())) {
+                    continue;
+                }
+                PathPatternTrie trie = index.computeIfAbsent(service.getId(), key -> new PathPatternTrie());
+                insertAll(trie, service.getUrls(), WHITELIST);
+                insertAll(trie, service.getAnonymousUrls(), ANONYMOUS);
+            }
+        }
+        this.configIndex = Collections.unmodifiableMap(index);
+        log.info("路由权限索引已重建, services={}", index.keySet());
+    }
+
+    /**
+     * 实例变更后重建对应服务的元数据索引，未访问过的服务不预先构建
+     * 事件由 Nacos 客户端线程发布，不在事件循环线程上；重建失败时移除旧索引，由下次请求重新构建
+     */
+    @EventListener
+    public void onInstancesChanged(ServiceInstancesChangedEvent event) {
+        if (event.isAllServices()) {
+            metadataIndex.keySet().forEach(this::refreshMetadataTrie);
+        } else if (metadataIndex.containsKey(event.getServiceId())) {
+            refreshMetadataTrie(event.getServiceId());
+        }
+    }
+
+    private void refreshMetadataTrie(String serviceId) {
+        try {
+            metadataIndex.put(serviceId, buildMetadataTrie(serviceId));
+        } catch (Exception e) {
+            log.error("Failed to fetch metadata from Nacos for service: {}", serviceId, e);
+            metadataIndex.remove(serviceId);
+        }
+    }
+
+    /**
+     * 计算路径命中的权限标记
+     * 同时匹配带服务名前缀和不带服务名前缀的路径，兼容两种配置写法
+     *
+     * @param serviceId 路由目标服务
+     * @param segments  {@link PathPatternTrie#tokenize(String)} 切分后的请求路径
+     * @return {@link #WHITELIST} 与 {@link #ANONYMOUS} 的组合，元数据索引已构建时同步返回
+     */
+    public Mono<Integer> classify(String serviceId, String[] segments) {
+        int flags = match(configIndex.get(serviceId), serviceId, segments, 0);
+        if (flags == ALL) {
+            return Mono.just(flags);
+        }
+        PathPatternTrie metadataTrie = metadataIndex.get(serviceId);
+        if (metadataTrie != null) {
+            return Mono.just(match(metadataTrie, serviceId, segments, flags));
+        }
+        // 首次访问的服务构建一次，之后只由实例变更事件刷新；构建失败时本次只按配置判断
+        return loadMetadataTrie(serviceId)
+                .map(trie -> match(trie, serviceId, segments, flags))
+                .onErrorReturn(flags);
+    }
+
+    private Mono<PathPatternTrie> loadMetadataTrie(String serviceId) {
+        return pendingBuilds.computeIfAbsent(serviceId, key -> Mono.fromCallable(() -> buildMetadataTrie(key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(trie -> metadataIndex.put(key, trie))
+                .doOnError(e -> log.error("Failed to fetch metadata from Nacos for service: {}", key, e))
+                .doFinally(signal -> pendingBuilds.remove(key))
+                .cache());
+    }
+
+    private int match(PathPatternTrie trie, String serviceId, String[] segments, int flags) {
+        if (trie == null || trie.isEmpty()) {
+            return flags;
+        }
+        flags |= trie.match(segments, 0, ALL);
+        if (flags != ALL && segments.length > 0 && segments[0].equals(serviceId)) {
+            flags |= trie.match(segments, 1, ALL);
+        }
+        return flags;
+    }
+
+    /**
+     * 合并所有实例的元数据白名单，防止灰度发布期间配置不一致
+     * 注册中心查询是阻塞调用，查询失败时抛出异常，由调用方决定是否缓存
+     */
+    private PathPatternTrie buildMetadataTrie(String serviceId) {
+        PathPatternTrie trie = new PathPatternTrie();
+        List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
+        if (instances != null) {
+            for (ServiceInstance instance : instances) {
+                Map<String, String> metadata = instance.getMetadata();
+                if (metadata == null) {
+                    continue;
+                }
+                insertAll(trie, splitUrls(metadata.get(META_WHITELIST_URLS)), WHITELIST);
+                insertAll(trie, splitUrls(metadata.get(META_ANONYMOUS_URLS)), ANONYMOUS);
+            }
+        }
+        return trie;
+    }
+
+    private List<String> splitUrls(String raw) {
+        if (StringUtils.isBlank(raw)) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(StringUtils.split(raw, ','));
+    }
+
+    private void insertAll(PathPatternTrie trie, List<String> patterns, int flag) {
+        if (patterns == null) {
+            return;
+        }
+        for (String pattern : patterns) {
+            trie.insert(pattern, flag);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.aiolos.octopus.gateway.util.PathPatternTrie;
+import com.aiolos.octopus.gateway.util.PathTemplateTrie;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 秒杀活动索引
+ * 将 rate-limit.seckill.activities 按路径模板预编译为前缀树，请求时一次最长前缀匹配，不再逐个活动扫描
+ * 活动 ID 用作令牌桶与排队键的 hash tag，只允许字母、数字、下划线和中划线；启动时配置不合法直接失败，
+ * Nacos 配置刷新后配置不合法时保留原索引
+ */
+@Slf4j
+@Component
+public class SeckillActivityIndex {
+
+    private static final Pattern ACTIVITY_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    private volatile Snapshot snapshot = new Snapshot(new PathTemplateTrie<>(), Collections.emptyList());
+
+    @PostConstruct
+    public void init() {
+        rebuild(true);
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void refresh() {
+        rebuild(false);
+    }
+
+    private void rebuild(boolean startup) {
+        try {
+            this.snapshot = compile(rateLimitProperties.getSeckill().getActivities());
+            log.info("秒杀活动索引已重建, activities={}", snapshot.activities.size());
+        } catch (IllegalArgumentException e) {
+            if (startup) {
+                throw new IllegalStateException("rate-limit.seckill.activities 配置不合法: " + e.getMessage(), e);
+            }
+            log.error("rate-limit.seckill.activities 配置不合法, 保留原索引: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 查找请求命中的秒杀活动
+     * 同时匹配带服务名前缀和不带服务名前缀的路径，取匹配段数更多的活动
+     *
+     * @param segments {@link PathPatternTrie#tokenize(String)} 切分后的请求路径
+     * @return 未命中时返回 null
+     */
+    public GatewayRateLimitProperties.Activity find(String[] segments) {
+        PathTemplateTrie<GatewayRateLimitProperties.Activity> byPath = snapshot.byPath;
+        if (byPath.isEmpty()) {
+            return null;
+        }
+        PathTemplateTrie.Match<GatewayRateLimitProperties.Activity> match = byPath.longestMatch(segments, 0);
+        if (segments.length > 1) {
+            PathTemplateTrie.Match<GatewayRateLimitProperties.Activity> stripped = byPath.longestMatch(segments, 1);
+            if (stripped != null && (match == null || stripped.depth() > match.depth())) {
+                match = stripped;
+            }
+        }
+        return match != null ? match.value() : null;
+    }
+
+    /**
+     * 校验通过的全部活动
+     */
+    public List<GatewayRateLimitProperties.Activity> activities() {
+        return snapshot.activities;
+    }
+
+    private static Snapshot compile(List<GatewayRateLimitProperties.Activity> activities) {
+        PathTemplateTrie<GatewayRateLimitProperties.Activity> byPath = new PathTemplateTrie<>();
+        List<GatewayRateLimitProperties.Activity> valid = new ArrayList<>();
+        if (activities == null) {
+            return new Snapshot(byPath, valid);
+        }
+        Set<String> ids = new HashSet<>();
+        for (GatewayRateLimitProperties.Activity activity : activities) {
+            if (activity == null) {
+                continue;
+            }
+            String id = activity.getId();
+            if (id == null || !ACTIVITY_ID.matcher(id).matches()) {
+                throw new IllegalArgumentException("活动 ID 只能包含字母、数字、下划线和中划线: " + id);
+            }
+            if (!ids.add(id)) {
+                throw new IllegalArgumentException("活动 ID 重复: " + id);
+            }
+            if (StringUtils.isBlank(activity.getPath())) {
+                throw new IllegalArgumentException("活动未配置路径: " + id);
+            }
+            byPath.insert(activity.getPath(), activity);
+            valid.add(activity);
+        }
+        return new Snapshot(byPath, Collections.unmodifiableList(valid));
+    }
+
+    private record Snapshot(PathTemplateTrie<GatewayRateLimitProperties.Activity> byPath,
+                            List<GatewayRateLimitProperties.Activity> activities) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.aiolos.octopus.gateway.util.HmacKeyRing;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 网关签名密钥
+ * 密钥只从配置（Nacos）读取，不再写死在代码中；启用了对应功能却没有配置合法密钥时启动失败
+ * Nacos 配置刷新后重建密钥环以完成轮换，刷新后的配置不合法时保留原密钥环
+ */
+@Slf4j
+@Component
+public class SigningKeys {
+
+    @Resource
+    private GatewayIdentityProperties gatewayIdentityProperties;
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    private volatile HmacKeyRing anonymousIdentity;
+
+    private volatile HmacKeyRing queueTicket;
+
+    @PostConstruct
+    public void init() {
+        rebuild(true);
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void refresh() {
+        rebuild(false);
+    }
+
+    private void rebuild(boolean startup) {
+        if (gatewayIdentityProperties.getAnonymousCookie().isEnabled()) {
+            HmacKeyRing keys = build("identity.anonymous-cookie.secrets",
+                    gatewayIdentityProperties.getAnonymousCookie().getSecrets(), startup);
+            if (keys != null) {
+                anonymousIdentity = keys;
+                log.info("匿名身份签名密钥已加载, keys={}", keys.size());
+            }
+        }
+        GatewayRateLimitProperties.Seckill seckill = rateLimitProperties.getSeckill();
+        if (seckill.anyQueueEnabled()) {
+            HmacKeyRing keys = build("rate-limit.seckill.ticket-secrets", seckill.getTicketSecrets(), startup);
+            if (keys != null) {
+                queueTicket = keys;
+                log.info("秒杀排队票据签名密钥已加载, keys={}", keys.size());
+            }
+        }
+    }
+
+    /**
+     * 构建密钥环，启动时配置不合法直接失败，刷新时配置不合法返回 null 以保留原密钥环
+     */
+    private static HmacKeyRing build(String property, List<String> secrets, boolean startup) {
+        try {
+            return HmacKeyRing.of(secrets);
+        } catch (IllegalArgumentException e) {
+            if (startup) {
+                throw new IllegalStateException(property + " 配置不合法: " + e.getMessage(), e);
+            }
+            log.error("{} 配置不合法, 保留原密钥: {}", property, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 匿名身份 cookie 签名密钥，匿名身份 cookie 未启用且从未启用过时为空
+     */
+    public HmacKeyRing anonymousIdentity() {
+        return anonymousIdentity;
+    }
+
+    /**
+     * 秒杀排队票据签名密钥，没有活动开启排队且从未开启过时为空
+     */
+    public HmacKeyRing queueTicket() {
+        return queueTicket;
+    }
+}
@@ -0,0 +1,205 @@
+package com.aiolos.octopus.gateway.context;
+
+import com.aiolos.octopus.gateway.config.GrayDecision;
+import com.aiolos.octopus.gateway.util.PathPatternTrie;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 单次请求的网关上下文
+ * 由 GatewayRequestContextFilter 在过滤器链最前面创建并放入 exchange 属性，各过滤器与负载均衡器共享：
+ * 服务ID、路径与路径段只解析一次；登录校验得到的用户、设备与灰度决策直接写入上下文，后续环节不再解析请求头
+ * 需要转发给下游的请求头先累积在上下文中，由 RequestHeaderMutationFilter 在负载均衡之前一次性写入请求
+ * 同一请求的过滤器按顺序执行，上下文不需要额外同步
+ */
+public final class GatewayRequestContext {
+
+    /**
+     * exchange 属性名
+     */
+    public static final String ATTRIBUTE = GatewayRequestContext.class.getName();
+
+    private final boolean routed;
+
+    private final String serviceId;
+
+    private final String path;
+
+    private String[] segments;
+
+    private InetAddress clientAddress;
+
+    private Long userId;
+
+    private boolean anonymous;
+
+    private String deviceId;
+
+    private GrayDecision grayDecision = GrayDecision.OUT_OF_SCOPE;
+
+    private Map<String, String> headerUpdates;
+
+    private Set<String> headerRemovals;
+
+    private GatewayRequestContext(Route route, ServerHttpRequest request) {
+        this.routed = route != null;
+        this.serviceId = route != null ? route.getUri().getHost() : null;
+        this.path = request.getURI().getPath();
+    }
+
+    /**
+     * 获取请求上下文，未创建时创建并放入 exchange 属性
+     */
+    public static GatewayRequestContext get(ServerWebExchange exchange) {
+        GatewayRequestContext context = exchange.getAttribute(ATTRIBUTE);
+        if (context == null) {
+            context = new GatewayRequestContext(exchange.getAttribute(GATEWAY_ROUTE_ATTR), exchange.getRequest());
+            exchange.getAttributes().put(ATTRIBUTE, context);
+        }
+        return context;
+    }
+
+    /**
+     * 是否匹配到路由
+     */
+    public boolean isRouted() {
+        return routed;
+    }
+
+    /**
+     * 路由目标服务，即路由 URI 的 host，未匹配路由时为空
+     */
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    /**
+     * 解码后的请求路径
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * {@link PathPatternTrie#tokenize(String)} 切分后的请求路径，首次访问时切分
+     */
+    public String[] getSegments() {
+        if (segments == null) {
+            segments = PathPatternTrie.tokenize(path);
+        }
+        return segments;
+    }
+
+    /**
+     * 经可信代理解析后的客户端地址，由 ClientIpResolver 首次解析时写入
+     */
+    public InetAddress getClientAddress() {
+        return clientAddress;
+    }
+
+    public void setClientAddress(InetAddress clientAddress) {
+        this.clientAddress = clientAddress;
+    }
+
+    /**
+     * 登录用户ID或匿名用户ID，由 AccountCheckFilter 写入，不信任客户端传入的用户请求头
+     */
+    public Long getUserId() {
+        return userId;
+    }
+
+    public boolean isAnonymous() {
+        return anonymous;
+    }
+
+    /**
+     * 记录登录校验得到的身份
+     *
+     * @param anonymous userId 是否为匿名用户ID
+     */
+    public void setPrincipal(Long userId, boolean anonymous) {
+        this.userId = userId;
+        this.anonymous = anonymous;
+    }
+
+    /**
+     * 匿名访问时解析出的设备ID
+     */
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * 灰度决策，由 FeatureGrayFilter 写入，未评估时为 {@link GrayDecision#OUT_OF_SCOPE}
+     */
+    public GrayDecision getGrayDecision() {
+        return grayDecision;
+    }
+
+    public void setGrayDecision(GrayDecision grayDecision) {
+        this.grayDecision = grayDecision;
+    }
+
+    /**
+     * 设置转发给下游的请求头，覆盖同名请求头
+     */
+    public void setHeader(String name, String value) {
+        if (headerRemovals != null) {
+            headerRemovals.remove(name);
+        }
+        if (headerUpdates == null) {
+            headerUpdates = new LinkedHashMap<>();
+        }
+        headerUpdates.put(name, value);
+    }
+
+    /**
+     * 移除客户端传入的请求头
+     */
+    public void removeHeader(String name) {
+        if (headerUpdates != null) {
+            headerUpdates.remove(name);
+        }
+        if (headerRemovals == null) {
+            headerRemovals = new LinkedHashSet<>();
+        }
+        headerRemovals.add(name);
+    }
+
+    /**
+     * 将累积的请求头修改一次性写入请求
+     *
+     * @return 没有修改时返回原 exchange
+     */
+    public ServerWebExchange applyTo(ServerWebExchange exchange) {
+        boolean hasUpdates = headerUpdates != null && !headerUpdates.isEmpty();
+        boolean hasRemovals = headerRemovals != null && !headerRemovals.isEmpty();
+        if (!hasUpdates && !hasRemovals) {
+            return exchange;
+        }
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(headers -> {
+                    if (hasRemovals) {
+                        headerRemovals.forEach(headers::remove);
+                    }
+                    if (hasUpdates) {
+                        headerUpdates.forEach(headers::set);
+                    }
+                })
+                .build();
+        return exchange.mutate().request(request).build();
+    }
+}
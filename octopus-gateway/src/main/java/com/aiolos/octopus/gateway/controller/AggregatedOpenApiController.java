@@ -1,49 +1,26 @@
 package com.aiolos.octopus.gateway.controller;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
+import com.aiolos.octopus.gateway.cache.ApiDocsCache;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
 
 @RestController
 public class AggregatedOpenApiController {
-    
-    @Value("${spring.application.name}")
-    private String serviceId;
 
-    private final DiscoveryClient discoveryClient;
+    private final ApiDocsCache apiDocsCache;
 
-    public AggregatedOpenApiController(DiscoveryClient discoveryClient) {
-        this.discoveryClient = discoveryClient;
+    public AggregatedOpenApiController(ApiDocsCache apiDocsCache) {
+        this.apiDocsCache = apiDocsCache;
     }
 
+    /**
+     * 聚合的 swagger-config，支持 ETag 与 gzip
+     * 内容由 ApiDocsHealthProber 按探测结果生成，只列出接口文档可访问的服务，请求路径上只读内存
+     */
     @GetMapping("/v3/api-docs/swagger-config")
-    public Map<String, Object> swaggerConfig() {
-        List<Map<String, String>> groups = discoveryClient.getServices().stream()
-                .filter(service -> !service.startsWith("providers") 
-                        && !service.equals(serviceId)
-                        && !service.startsWith("dubbo-")
-                )  // 排除网关自身
-                .filter(this::isServiceHealthy)  // 过滤健康状态
-                .map(service -> {
-                    Map<String, String> group = new HashMap<>();
-                    group.put("name", service);
-                    group.put("url", "/" + service + "/v3/api-docs");
-                    return group;
-                }).collect(Collectors.toList());
-
-        Map<String, Object> config = new HashMap<>();
-        config.put("urls", groups);
-        return config;
-    }
-
-    private boolean isServiceHealthy(String serviceId) {
-        // 调用注册中心健康检查接口或自行实现探活逻辑
-        return true;
+    public Mono<Void> swaggerConfig(ServerWebExchange exchange) {
+        return apiDocsCache.getSwaggerConfig().write(exchange);
     }
 }
@@ -0,0 +1,36 @@
+package com.aiolos.octopus.gateway.controller;
+
+import com.aiolos.octopus.gateway.ratelimit.SeckillWaitingRoom;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 秒杀排队状态查询
+ * 只读网关本地内存，不访问 Redis 和下游服务，客户端可按 retryAfterMillis 轮询
+ */
+@RestController
+public class SeckillQueueController {
+
+    private final SeckillWaitingRoom seckillWaitingRoom;
+
+    public SeckillQueueController(SeckillWaitingRoom seckillWaitingRoom) {
+        this.seckillWaitingRoom = seckillWaitingRoom;
+    }
+
+    @GetMapping("/seckill-queue/status")
+    public ResponseEntity<Map<String, Object>> status(
+            @RequestHeader(value = SeckillWaitingRoom.TICKET_HEADER, required = false) String ticketHeader,
+            @RequestParam(value = "ticket", required = false) String ticketParam) {
+        Map<String, Object> status = seckillWaitingRoom.status(ticketHeader != null ? ticketHeader : ticketParam);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(status);
+    }
+}
@@ -0,0 +1,171 @@
+package com.aiolos.octopus.gateway.discovery;
+
+import com.aiolos.octopus.gateway.cache.ApiDocsCache;
+import com.aiolos.octopus.gateway.config.GatewayApiDocsProbeProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 接口文档健康探测
+ * 后台定时并发以 HEAD 请求访问每个服务实例的 /v3/api-docs，任一实例在超时时间内返回 2xx 即视为健康，
+ * 健康服务列表变化时重建 swagger-config 并放入 {@link ApiDocsCache}，文档页面请求只读内存，不访问注册中心与服务提供方
+ * 同一时刻只有一轮探测，上一轮未结束时跳过本次调度
+ */
+@Slf4j
+@Component
+public class ApiDocsHealthProber {
+
+    @Value("${spring.application.name}")
+    private String serviceId;
+
+    @Resource
+    private DiscoveryClient discoveryClient;
+
+    @Resource
+    private ApiDocsCache apiDocsCache;
+
+    @Resource
+    private GatewayApiDocsProbeProperties probeProperties;
+
+    @Resource
+    private WebClient.Builder webClientBuilder;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private WebClient webClient;
+
+    private Disposable prober;
+
+    // 已完成探测的服务及结果，未出现的服务尚未探测
+    private volatile Map<String, Boolean> results = Collections.emptyMap();
+
+    private volatile List<String> healthyServices;
+
+    @PostConstruct
+    public void start() {
+        webClient = webClientBuilder.build();
+        // 首轮探测完成前返回空列表，不在请求路径上查询注册中心
+        publish(Collections.emptyList());
+        prober = Flux.interval(Duration.ZERO, Duration.ofSeconds(Math.max(1, probeProperties.getIntervalSeconds())))
+                .onBackpressureDrop()
+                .flatMap(tick -> probeAll()
+                        .doOnNext(this::update)
+                        .onErrorResume(e -> {
+                            log.error("接口文档健康探测失败", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (prober != null) {
+            prober.dispose();
+        }
+    }
+
+    /**
+     * 服务是否已探测为不可用，尚未探测的服务返回 false
+     */
+    public boolean isUnhealthy(String serviceId) {
+        return Boolean.FALSE.equals(results.get(serviceId));
+    }
+
+    private Mono<Map<String, Boolean>> probeAll() {
+        GatewayApiDocsProbeProperties config = probeProperties;
+        // 注册中心客户端是阻塞调用，放到弹性线程池
+        return Mono.fromCallable(this::discover)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(services -> Flux.fromIterable(services.entrySet()))
+                .flatMap(entry -> (config.isEnabled() ? probe(entry.getValue(), config) : Mono.just(true))
+                                .map(healthy -> Map.entry(entry.getKey(), healthy)),
+                        Math.max(1, config.getConcurrency()))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, TreeMap::new);
+    }
+
+    private Map<String, List<ServiceInstance>> discover() {
+        Map<String, List<ServiceInstance>> services = new LinkedHashMap<>();
+        for (String service : discoveryClient.getServices()) {
+            if (service.startsWith("providers") || service.equals(serviceId) || service.startsWith("dubbo-")) {
+                continue;
+            }
+            List<ServiceInstance> instances = discoveryClient.getInstances(service);
+            services.put(service, instances == null ? Collections.emptyList() : instances);
+        }
+        return services;
+    }
+
+    /**
+     * 并发探测服务的全部实例，首个成功的实例即判定健康
+     * 使用 HEAD 请求，只看状态码不下载文档内容；springdoc 的 GET 映射同时响应 HEAD，响应体为空
+     */
+    private Mono<Boolean> probe(List<ServiceInstance> instances, GatewayApiDocsProbeProperties config) {
+        if (instances.isEmpty()) {
+            return Mono.just(false);
+        }
+        return Flux.fromIterable(instances)
+                .flatMap(instance -> webClient.head()
+                        .uri(instance.getUri() + config.getPath())
+                        .exchangeToMono(response -> response.releaseBody()
+                                .thenReturn(response.statusCode().is2xxSuccessful()))
+                        .timeout(Duration.ofMillis(config.getTimeoutMillis()))
+                        .onErrorReturn(false))
+                .any(Boolean::booleanValue);
+    }
+
+    private void update(Map<String, Boolean> probed) {
+        results = Collections.unmodifiableMap(probed);
+        List<String> healthy = new ArrayList<>();
+        probed.forEach((service, ok) -> {
+            if (ok) {
+                healthy.add(service);
+            }
+        });
+        if (healthy.equals(healthyServices)) {
+            return;
+        }
+        Set<String> removed = new TreeSet<>(healthyServices);
+        healthy.forEach(removed::remove);
+        log.info("接口文档服务列表变更, healthy={}, removed={}", healthy, removed);
+        publish(healthy);
+    }
+
+    private void publish(List<String> healthy) {
+        List<Map<String, String>> groups = new ArrayList<>(healthy.size());
+        for (String service : healthy) {
+            Map<String, String> group = new LinkedHashMap<>();
+            group.put("name", service);
+            group.put("url", "/" + service + "/v3/api-docs");
+            groups.add(group);
+        }
+        try {
+            apiDocsCache.putSwaggerConfig(objectMapper.writeValueAsBytes(Map.of("urls", groups)));
+            healthyServices = healthy;
+        } catch (JsonProcessingException e) {
+            log.error("swagger-config 序列化失败", e);
+        }
+    }
+}
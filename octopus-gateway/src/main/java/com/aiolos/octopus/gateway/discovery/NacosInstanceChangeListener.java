@@ -0,0 +1,61 @@
+package com.aiolos.octopus.gateway.discovery;
+
+import com.alibaba.nacos.api.naming.utils.NamingUtils;
+import com.alibaba.nacos.client.naming.event.InstancesChangeEvent;
+import com.alibaba.nacos.common.notify.Event;
+import com.alibaba.nacos.common.notify.NotifyCenter;
+import com.alibaba.nacos.common.notify.listener.Subscriber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Nacos 实例变更监听
+ * 将 Nacos 客户端的 InstancesChangeEvent 与 Spring Cloud 的 HeartbeatEvent 统一转换为 {@link ServiceInstancesChangedEvent}
+ */
+@Slf4j
+@Component
+public class NacosInstanceChangeListener extends Subscriber<InstancesChangeEvent> {
+
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @PostConstruct
+    public void register() {
+        NotifyCenter.registerSubscriber(this);
+    }
+
+    @PreDestroy
+    public void deregister() {
+        NotifyCenter.deregisterSubscriber(this);
+    }
+
+    /**
+     * 部分 Nacos 客户端版本的 serviceName 带分组前缀（DEFAULT_GROUP@@svc），去掉分组后与 Spring Cloud 的 serviceId 一致
+     */
+    @Override
+    public void onEvent(InstancesChangeEvent event) {
+        String serviceId = NamingUtils.getServiceName(event.getServiceName());
+        log.debug("Nacos 实例变更, serviceName={}, serviceId={}, hosts={}", event.getServiceName(), serviceId,
+                event.getHosts() == null ? 0 : event.getHosts().size());
+        applicationEventPublisher.publishEvent(new ServiceInstancesChangedEvent(this, serviceId));
+    }
+
+    @Override
+    public Class<? extends Event> subscribeType() {
+        return InstancesChangeEvent.class;
+    }
+
+    /**
+     * 心跳事件不携带具体服务，作为兜底触发全部快照刷新
+     */
+    @EventListener(HeartbeatEvent.class)
+    public void onHeartbeat() {
+        applicationEventPublisher.publishEvent(new ServiceInstancesChangedEvent(this, null));
+    }
+}
@@ -0,0 +1,29 @@
+package com.aiolos.octopus.gateway.discovery;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 服务实例变更事件
+ * 由 {@link NacosInstanceChangeListener} 在 Nacos 推送实例变更或心跳时发布，
+ * 依赖实例列表的本地快照据此重建，请求路径上不再实时查询注册中心
+ */
+public class ServiceInstancesChangedEvent extends ApplicationEvent {
+
+    private final String serviceId;
+
+    /**
+     * @param serviceId 变更的服务，为空表示所有服务都可能变更
+     */
+    public ServiceInstancesChangedEvent(Object source, String serviceId) {
+        super(source);
+        this.serviceId = serviceId;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public boolean isAllServices() {
+        return serviceId == null;
+    }
+}
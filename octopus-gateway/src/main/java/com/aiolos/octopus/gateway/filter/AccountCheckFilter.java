@@ -1,85 +1,84 @@
 package com.aiolos.octopus.gateway.filter;
 
 import cn.hutool.core.collection.CollectionUtil;
-import com.aiolos.badger.identitycore.api.AccountTokenApi;
-import com.aiolos.badger.identitycore.dto.AccountDTO;
 import com.aiolos.common.enums.GatewayHeaderEnum;
-import com.aiolos.octopus.gateway.config.GatewayWhitelistProperties;
+import com.aiolos.octopus.gateway.cache.VerifiedTokenCache;
+import com.aiolos.octopus.gateway.config.GatewayIdentityProperties;
+import com.aiolos.octopus.gateway.config.RoutePermissionIndex;
+import com.aiolos.octopus.gateway.config.SigningKeys;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import com.aiolos.octopus.gateway.rpc.AccountIdentityClient;
+import com.aiolos.octopus.gateway.rpc.IdentityUnavailableException;
+import com.aiolos.octopus.gateway.util.AnonymousIdentityUtil;
+import com.aiolos.octopus.gateway.util.HmacKeyRing;
 import com.aiolos.octopus.gateway.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.dubbo.config.annotation.DubboReference;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
-import org.springframework.cloud.gateway.route.Route;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpCookie;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
-
 @Slf4j
 @Component
 public class AccountCheckFilter implements GlobalFilter, Ordered {
 
-    @DubboReference
-    private AccountTokenApi accountTokenApi;
-    
     @Resource
-    private GatewayWhitelistProperties gatewayWhitelistProperties;
+    private AccountIdentityClient accountIdentityClient;
+
+    @Resource
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Resource
+    private GatewayIdentityProperties gatewayIdentityProperties;
     
     @Resource
-    private DiscoveryClient discoveryClient;
+    private RoutePermissionIndex routePermissionIndex;
+
+    @Resource
+    private SigningKeys signingKeys;
     
     @Value("${spring.profiles.active}")
     private String activeProfile;
     @Value("${cookie-domain}")
     private String cookieDomain;
-
-    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
     
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 
-        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
-
-        ServerHttpRequest request = exchange.getRequest();
-        String path = request.getURI().getPath();
+        GatewayRequestContext context = GatewayRequestContext.get(exchange);
+        String path = context.getPath();
         
-        if (route == null || path.contains("api-docs")) {
+        if (!context.isRouted() || path.contains("api-docs")) {
             return chain.filter(exchange);
         }
         if (StringUtils.isBlank(path)) {
             return Mono.empty();
         }
 
-        String serviceId = route.getUri().getHost();
+        String serviceId = context.getServiceId();
         if (serviceId == null) {
             log.error("无法识别的服务路径: {}", path);
             exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
             return exchange.getResponse().setComplete();
         }
 
-        List<String> anonymousUrls = new ArrayList<>();
-        boolean whitelistMatched = false;
-        GatewayWhitelistProperties.ServiceConfig serviceConfig = gatewayWhitelistProperties.findServiceConfig(serviceId);
+        String[] segments = context.getSegments();
 
         /*
           兜底方案，可以在octopus-gateway-config.yaml中添加
@@ -90,152 +89,147 @@ public class AccountCheckFilter implements GlobalFilter, Ordered {
                   - /living-room/list
                 anonymous-urls:
                   - /living-room/anchor-config
-          octopus会热更新白名单
+          octopus会热更新白名单，配置刷新后由 RoutePermissionIndex 重建索引
+          Nacos 实例元数据中的 whitelist-urls / anonymous-urls 同样合并进索引，实例变更时刷新
          */
-        if (serviceConfig != null) {
-            if (CollectionUtil.isNotEmpty(serviceConfig.getUrls())) {
-                String pathWithoutServiceId = path.replaceFirst("/" + serviceId, "");
-                for (String whitelistUrl : serviceConfig.getUrls()) {
-                    if (antPathMatcher.match(whitelistUrl, path)) {
-                        whitelistMatched = true;
-                        break;
-                    }
-                    // 兼容配置的路径不带服务名的情况
-                    if (antPathMatcher.match(whitelistUrl, pathWithoutServiceId)) {
-                        whitelistMatched = true;
-                        break;
-                    }
-                }
-            }
-            if (CollectionUtil.isNotEmpty(serviceConfig.getAnonymousUrls())) {
-                String pathWithoutServiceId = path.replaceFirst("/" + serviceId, "");
-                for (String anonymousUrl : serviceConfig.getAnonymousUrls()) {
-                    if (antPathMatcher.match(anonymousUrl, path)) {
-                        anonymousUrls.add(anonymousUrl);
-                    }
-                    if (antPathMatcher.match(anonymousUrl, pathWithoutServiceId)) {
-                        anonymousUrls.add(anonymousUrl);
-                    }
-                }
-            }
-        }
-        
-        try {
-            // 从Nacos元数据获取动态白名单（合并所有实例的配置，防止灰度发布期间配置不一致）
-            List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
-            if (CollectionUtil.isNotEmpty(instances)) {
-                String pathWithoutServiceId = path.replaceFirst("/" + serviceId, "");
-                for (ServiceInstance instance : instances) {
-                    Map<String, String> metadata = instance.getMetadata();
-                    if (metadata == null) continue;
-                    
-                    String whitelistStr = metadata.get("whitelist-urls");
-                    if (StringUtils.isNotBlank(whitelistStr)) {
-                        String[] urls = whitelistStr.split(",");
-                        for (String url : urls) {
-                            if (antPathMatcher.match(url, path)) {
-                                whitelistMatched = true;
-                                break;
-                            }
-                            // 兼容Nacos中配置的路径不带服务名的情况
-                            if (antPathMatcher.match(url, pathWithoutServiceId)) {
-                                whitelistMatched = true;
-                                break;
-                            }
-                        }
-                        if (whitelistMatched) {
-                            break;
-                        }
-                    }
-                    
-                    String anonymousStr = metadata.get("anonymous-urls");
-                    if (StringUtils.isNotBlank(anonymousStr)) {
-                        String[] urls = anonymousStr.split(",");
-                        for (String url : urls) {
-                            if (!anonymousUrls.contains(url)) {
-                                anonymousUrls.add(url);
-                            }
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.error("Failed to fetch metadata from Nacos for service: {}", serviceId, e);
-        }
+        return routePermissionIndex.classify(serviceId, segments)
+                .flatMap(permission -> authenticate(exchange, chain, context, path, permission));
+    }
+
+    private Mono<Void> authenticate(ServerWebExchange exchange, GatewayFilterChain chain,
+                                    GatewayRequestContext context, String path, int permission) {
+        boolean whitelisted = (permission & RoutePermissionIndex.WHITELIST) != 0;
+        boolean anonymousAllowed = (permission & RoutePermissionIndex.ANONYMOUS) != 0;
 
         // 不在白名单的请求需要提取cookie做校验
         String token = resolveToken(exchange);
-        Long userId = null;
+        Mono<Long> userIdMono = StringUtils.isNotBlank(token) ? resolveUserId(token, path) : Mono.empty();
 
-        if (StringUtils.isNotBlank(token)) {
+        return userIdMono
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                // 降级策略为 FAIL_CLOSED 时身份服务不可用直接返回 503，不再继续后续过滤器
+                .onErrorResume(IdentityUnavailableException.class, e -> rejectUnavailable(exchange).then(Mono.empty()))
+                .flatMap(userId -> {
+                    if (userId.isPresent()) {
+                        // 将用户信息放入请求头，下游服务可以从请求头中获取，再放入ContextInfo中
+                        context.setPrincipal(userId.get(), false);
+                        context.setHeader(GatewayHeaderEnum.USER_LOGIN_ID.getHeaderName(), userId.get().toString());
+                        context.setHeader(GatewayHeaderEnum.IS_ANONYMOUS.getHeaderName(), "false");
+                        return chain.filter(exchange);
+                    }
+                    if (whitelisted) {
+                        return chain.filter(exchange);
+                    }
+                    if (anonymousAllowed) {
+                        return handleAnonymous(exchange, chain, context);
+                    }
+                    log.warn("Request intercepted due to lack of authentication, path: {}", path);
+                    exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+                    return exchange.getResponse().setComplete();
+                });
+    }
+
+    /**
+     * 解析 token 对应的用户ID
+     * 先查已校验 token 缓存；未命中时优先 JWT 本地解析，签名等校验失败时回退异步 RPC，过期 token 不回退
+     */
+    private Mono<Long> resolveUserId(String token, String path) {
+        Mono<Long> userIdMono;
+        VerifiedTokenCache.Entry cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            userIdMono = cached.isValid() ? Mono.just(cached.getUserId()) : Mono.empty();
+        } else {
             try {
                 // 优先使用 JWT 本地解析
-                String subject = JwtUtil.getSubjectFromToken(token);
-                userId = Long.parseLong(subject);
+                Claims claims = JwtUtil.parseToken(token);
+                long userId = Long.parseLong(claims.getSubject());
+                if (claims.getExpiration() != null) {
+                    verifiedTokenCache.putVerified(token, userId, claims.getExpiration().getTime());
+                }
+                userIdMono = Mono.just(userId);
             } catch (ExpiredJwtException e) {
                 // 关键修改：捕获过期异常
                 log.warn("JWT is expired. Token: {}, Error: {}", token, e.getMessage());
-                // 不降级调用 RPC，让 userId 保持为 null
+                // 不降级调用 RPC，让 userId 保持为 null；过期 token 不会再变为有效，直接负缓存
+                verifiedTokenCache.putInvalid(token);
+                userIdMono = Mono.empty();
             } catch (Exception e) {
                 log.warn("JWT validation failed, fallback to RPC: {}", e.getMessage());
                 // 如果是其他类型的异常（如签名错误等），可以尝试回退 RPC
-                try {
-                    AccountDTO accountDto = accountTokenApi.getUserByToken(token);
-                    if (accountDto != null && accountDto.getUserId() != null) {
-                        userId = accountDto.getUserId();
-                    }
-                } catch (Exception rpcException) {
-                    log.warn("RPC Token validation failed: {}", rpcException.getMessage());
-                }
-            }
-            
-            // 关键修复：如果传了 token，但经过 JWT 和 RPC 校验后 userId 依然为空，说明 token 是伪造的或已过期。
-            // 此时我们不直接拦截返回 401，而是记录日志，让它以“未登录”的身份继续走下面的匿名判断逻辑。
-            // 这样如果是允许匿名的接口（如加购物车），它依然可以获得匿名 ID 正常工作；如果是不允许匿名的接口，会在下面统一拦截。
-            if (userId == null) {
-                log.warn("Invalid token provided, degrading to anonymous request. Path: {}", path);
+                userIdMono = accountIdentityClient.getUserIdByToken(token);
             }
         }
+        // 关键修复：如果传了 token，但经过 JWT 和 RPC 校验后 userId 依然为空，说明 token 是伪造的或已过期。
+        // 此时我们不直接拦截返回 401，而是记录日志，让它以“未登录”的身份继续走下面的匿名判断逻辑。
+        // 这样如果是允许匿名的接口（如加购物车），它依然可以获得匿名 ID 正常工作；如果是不允许匿名的接口，会在下面统一拦截。
+        return userIdMono.switchIfEmpty(Mono.fromRunnable(
+                () -> log.warn("Invalid token provided, degrading to anonymous request. Path: {}", path)));
+    }
 
-        ServerHttpRequest.Builder builder = request.mutate();
-        
-        if (userId != null) {
-
-            // 将用户信息放入请求头，下游服务可以从请求头中获取，再放入ContextInfo中
-            builder.header(GatewayHeaderEnum.USER_LOGIN_ID.getHeaderName(), userId.toString());
-            builder.header(GatewayHeaderEnum.IS_ANONYMOUS.getHeaderName(), "false");
-            return chain.filter(exchange.mutate().request(builder.build()).build());
-        } else {
-            if (whitelistMatched) {
-                return chain.filter(exchange);
-            }
+    private Mono<Void> rejectUnavailable(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        return exchange.getResponse().setComplete();
+    }
 
-            if (CollectionUtil.isNotEmpty(anonymousUrls)) {
-                String pathWithoutServiceId = path.replaceFirst("/" + serviceId, "");
-                for (String anonymousUrl : anonymousUrls) {
-                    if (antPathMatcher.match(anonymousUrl, path)) {
-                        return handleAnonymous(exchange, chain, builder);
+    private Mono<Void> handleAnonymous(ServerWebExchange exchange, GatewayFilterChain chain, GatewayRequestContext context) {
+        GatewayIdentityProperties.AnonymousCookie cookieConfig = gatewayIdentityProperties.getAnonymousCookie();
+        // 运行期开启匿名身份 cookie 但密钥不合法时没有密钥环，按未开启处理
+        HmacKeyRing keys = cookieConfig.isEnabled() ? signingKeys.anonymousIdentity() : null;
+        AnonymousIdentityUtil.AnonymousIdentity identity = keys != null
+                ? resolveAnonymousIdentity(exchange, cookieConfig, keys) : null;
+        String deviceId = resolveDeviceId(exchange, identity);
+        // 签名 cookie 与当前设备一致时本地即可确定匿名 userId，不再调用 RPC
+        if (identity != null && identity.deviceId().equals(deviceId)) {
+            return forwardAnonymous(exchange, chain, context, deviceId, identity.anonymousId());
+        }
+        return accountIdentityClient.getOrCreateAnonymousId(deviceId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .onErrorResume(IdentityUnavailableException.class, e -> rejectUnavailable(exchange).then(Mono.empty()))
+                .flatMap(anonymousId -> {
+                    if (anonymousId.isEmpty()) {
+                        // 降级放行时不下发匿名 userId，只透传设备信息
+                        return forwardAnonymous(exchange, chain, context, deviceId, null);
                     }
-                    if (antPathMatcher.match(anonymousUrl, pathWithoutServiceId)) {
-                        return handleAnonymous(exchange, chain, builder);
+                    if (keys != null) {
+                        issueAnonymousIdentity(exchange, cookieConfig, keys, deviceId, anonymousId.get());
                     }
-                }
-            }
-            log.warn("Request intercepted due to lack of authentication, path: {}", path);
-            exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
-            return exchange.getResponse().setComplete();
+                    return forwardAnonymous(exchange, chain, context, deviceId, anonymousId.get());
+                });
+    }
+
+    private Mono<Void> forwardAnonymous(ServerWebExchange exchange, GatewayFilterChain chain,
+                                        GatewayRequestContext context, String deviceId, Long anonymousId) {
+        // 请求头累积在上下文中，由 RequestHeaderMutationFilter 统一写入
+        context.setPrincipal(anonymousId, true);
+        context.setDeviceId(deviceId);
+        if (anonymousId != null) {
+            context.setHeader(GatewayHeaderEnum.USER_LOGIN_ID.getHeaderName(), anonymousId.toString());
+        } else {
+            // 降级放行时没有匿名 userId，移除客户端自带的用户请求头，防止伪造身份
+            context.removeHeader(GatewayHeaderEnum.USER_LOGIN_ID.getHeaderName());
         }
+        context.setHeader(GatewayHeaderEnum.DEVICE_ID.getHeaderName(), deviceId);
+        context.setHeader("device-id", deviceId);
+        context.setHeader("X-Device-ID", deviceId);
+        context.setHeader(GatewayHeaderEnum.IS_ANONYMOUS.getHeaderName(), "true");
+        return chain.filter(exchange);
+    }
+
+    private AnonymousIdentityUtil.AnonymousIdentity resolveAnonymousIdentity(ServerWebExchange exchange,
+                                                                            GatewayIdentityProperties.AnonymousCookie cookieConfig,
+                                                                            HmacKeyRing keys) {
+        HttpCookie identityCookie = exchange.getRequest().getCookies().getFirst(cookieConfig.getName());
+        return identityCookie == null ? null : AnonymousIdentityUtil.verify(keys, identityCookie.getValue());
     }
 
-    private Mono<Void> handleAnonymous(ServerWebExchange exchange, GatewayFilterChain chain, ServerHttpRequest.Builder builder) {
-        String deviceId = resolveDeviceId(exchange);
-        Long anonymousId = accountTokenApi.getOrCreateAnonymousId(deviceId);
-        builder.header(GatewayHeaderEnum.USER_LOGIN_ID.getHeaderName(), anonymousId.toString());
-        builder.header(GatewayHeaderEnum.DEVICE_ID.getHeaderName(), deviceId);
-        builder.header("device-id", deviceId);
-        builder.header("X-Device-ID", deviceId);
-        builder.header(GatewayHeaderEnum.IS_ANONYMOUS.getHeaderName(), "true");
-        return chain.filter(exchange.mutate().request(builder.build()).build());
+    private void issueAnonymousIdentity(ServerWebExchange exchange, GatewayIdentityProperties.AnonymousCookie cookieConfig,
+                                        HmacKeyRing keys, String deviceId, long anonymousId) {
+        Duration maxAge = Duration.ofDays(cookieConfig.getMaxAgeDays());
+        String value = AnonymousIdentityUtil.sign(keys, deviceId, anonymousId, System.currentTimeMillis() + maxAge.toMillis());
+        exchange.getResponse().getHeaders().set("Access-Control-Allow-Credentials", "true");
+        exchange.getResponse().addCookie(buildCookie(exchange.getRequest(), cookieConfig.getName(), value, maxAge));
     }
 
     private String resolveToken(ServerWebExchange exchange) {
@@ -247,7 +241,7 @@ public class AccountCheckFilter implements GlobalFilter, Ordered {
         return null;
     }
 
-    private String resolveDeviceId(ServerWebExchange exchange) {
+    private String resolveDeviceId(ServerWebExchange exchange, AnonymousIdentityUtil.AnonymousIdentity identity) {
         String deviceId = null;
         ServerHttpRequest request = exchange.getRequest();
         List<String> deviceHeaders = request.getHeaders().get("X-Device-ID");
@@ -269,25 +263,35 @@ public class AccountCheckFilter implements GlobalFilter, Ordered {
             }
         }
 
+        // device-id cookie 丢失但匿名身份 cookie 仍有效时沿用其中的设备ID
+        if (StringUtils.isBlank(deviceId) && identity != null) {
+            deviceId = identity.deviceId();
+        }
+
         if (StringUtils.isBlank(deviceId)) {
             deviceId = UUID.randomUUID().toString().replace("-", "");
-            ResponseCookie.ResponseCookieBuilder cookieBuilder = ResponseCookie.from("device-id", deviceId)
-                    .maxAge(Duration.ofDays(7)) // 如果有未登录加购功能，可以设置365
-                    .httpOnly(true)
-                    .secure(activeProfile.equalsIgnoreCase("prod")) // 仅https传输
-                    .path("/");
-            // 关键保护：只有 cookie-domain 与当前请求主机匹配时才下发 Domain，避免出现 Domain=localhost 导致浏览器不回传 cookie
-            String requestHost = request.getHeaders().getFirst("Host");
-            if (shouldSetCookieDomain(requestHost)) {
-                cookieBuilder.domain(cookieDomain);
-            }
-            ResponseCookie deviceCookie = cookieBuilder.build();
+            // 如果有未登录加购功能，可以设置365
+            ResponseCookie deviceCookie = buildCookie(request, "device-id", deviceId, Duration.ofDays(7));
             exchange.getResponse().getHeaders().set("Access-Control-Allow-Credentials", "true");
             exchange.getResponse().addCookie(deviceCookie);
         }
         return deviceId;
     }
 
+    private ResponseCookie buildCookie(ServerHttpRequest request, String name, String value, Duration maxAge) {
+        ResponseCookie.ResponseCookieBuilder cookieBuilder = ResponseCookie.from(name, value)
+                .maxAge(maxAge)
+                .httpOnly(true)
+                .secure(activeProfile.equalsIgnoreCase("prod")) // 仅https传输
+                .path("/");
+        // 关键保护：只有 cookie-domain 与当前请求主机匹配时才下发 Domain，避免出现 Domain=localhost 导致浏览器不回传 cookie
+        String requestHost = request.getHeaders().getFirst("Host");
+        if (shouldSetCookieDomain(requestHost)) {
+            cookieBuilder.domain(cookieDomain);
+        }
+        return cookieBuilder.build();
+    }
+
     private boolean shouldSetCookieDomain(String requestHost) {
         if (StringUtils.isBlank(cookieDomain)) {
             return false;
@@ -308,6 +312,6 @@ public class AccountCheckFilter implements GlobalFilter, Ordered {
 
     @Override
     public int getOrder() {
-        return Ordered.HIGHEST_PRECEDENCE + 2;
+        return Ordered.HIGHEST_PRECEDENCE + 4;
     }
 }
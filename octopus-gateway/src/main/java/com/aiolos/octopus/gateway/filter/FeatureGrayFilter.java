@@ -1,21 +1,18 @@
 package com.aiolos.octopus.gateway.filter;
 
-import com.aiolos.common.enums.GatewayHeaderEnum;
 import com.aiolos.octopus.gateway.config.ApolloGrayRuleService;
+import com.aiolos.octopus.gateway.config.GrayDecision;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
-import org.springframework.cloud.gateway.route.Route;
 import org.springframework.core.Ordered;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
-
 /**
  * 通用灰度过滤器
  * 只负责按 Apollo 规则打灰度标记
@@ -33,50 +30,32 @@ public class FeatureGrayFilter implements GlobalFilter, Ordered {
      */
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
-        if (route == null) {
+        GatewayRequestContext context = GatewayRequestContext.get(exchange);
+        if (!context.isRouted()) {
             return chain.filter(exchange);
         }
-        String serviceId = route.getUri().getHost();
-        String path = exchange.getRequest().getURI().getPath();
-        ServerHttpRequest.Builder builder = exchange.getRequest().mutate();
         // 先移除外部传入的灰度头，避免伪造请求污染路由决策
-        builder.headers(headers -> {
-            headers.remove(ApolloGrayRuleService.ES_GRAY_HEADER);
-            headers.remove(ApolloGrayRuleService.ES_GRAY_INSTANCE_TAG_HEADER);
-        });
+        context.removeHeader(ApolloGrayRuleService.ES_GRAY_HEADER);
+        context.removeHeader(ApolloGrayRuleService.ES_GRAY_INSTANCE_TAG_HEADER);
+        // userId 由 AccountCheckFilter 写入上下文，不再解析请求头
+        GrayDecision decision = apolloGrayRuleService.decide(context.getServiceId(), context.getPath(), context.getUserId());
+        // 决策只计算一次，供 GrayTagLoadBalancer 等后续环节直接读取
+        context.setGrayDecision(decision);
         // 未命中灰度范围时直接透传
-        if (!apolloGrayRuleService.shouldMarkEsGray(serviceId, path)) {
-            return chain.filter(exchange.mutate().request(builder.build()).build());
-        }
-
-        Long userId = parseUserId(exchange.getRequest().getHeaders().getFirst(GatewayHeaderEnum.USER_LOGIN_ID.getHeaderName()));
-        boolean hitGray = apolloGrayRuleService.hitEsGray(userId);
-        builder.header(ApolloGrayRuleService.ES_GRAY_HEADER, hitGray ? "1" : "0");
-        String instanceTag = apolloGrayRuleService.getGrayInstanceTag();
-        if (hitGray && StringUtils.isNotBlank(instanceTag)) {
-            builder.header(ApolloGrayRuleService.ES_GRAY_INSTANCE_TAG_HEADER, instanceTag);
+        if (!decision.isInScope()) {
+            return chain.filter(exchange);
         }
-        return chain.filter(exchange.mutate().request(builder.build()).build());
-    }
 
-    /**
-     * 解析请求头中的 userId
-     */
-    private Long parseUserId(String header) {
-        if (StringUtils.isBlank(header)) {
-            return null;
-        }
-        try {
-            return Long.parseLong(header.trim());
-        } catch (NumberFormatException e) {
-            return null;
+        context.setHeader(ApolloGrayRuleService.ES_GRAY_HEADER, decision.isHit() ? "1" : "0");
+        if (decision.isHit() && StringUtils.isNotBlank(decision.getInstanceTag())) {
+            context.setHeader(ApolloGrayRuleService.ES_GRAY_INSTANCE_TAG_HEADER, decision.getInstanceTag());
         }
+        return chain.filter(exchange);
     }
 
     @Override
     public int getOrder() {
         // 鉴权过滤器写入 userId 后再执行灰度规则
-        return Ordered.HIGHEST_PRECEDENCE + 3;
+        return Ordered.HIGHEST_PRECEDENCE + 5;
     }
 }
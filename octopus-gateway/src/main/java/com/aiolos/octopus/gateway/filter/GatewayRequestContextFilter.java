@@ -0,0 +1,28 @@
+package com.aiolos.octopus.gateway.filter;
+
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * 请求上下文过滤器
+ * 在所有全局过滤器之前创建 {@link GatewayRequestContext}，后续过滤器通过 {@link GatewayRequestContext#get(ServerWebExchange)} 读取
+ */
+@Component
+public class GatewayRequestContextFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        GatewayRequestContext.get(exchange);
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,55 @@
+package com.aiolos.octopus.gateway.filter;
+
+import com.aiolos.octopus.gateway.loadbalancer.InstanceLoadTracker;
+import jakarta.annotation.Resource;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+/**
+ * 实例负载统计过滤器
+ * 紧跟在负载均衡之后，对选中的实例计入在途请求；NettyRoutingFilter 收到上游响应头时过滤链即完成，
+ * 此时记录响应时间（到上游响应头为止，不含响应体传输，响应体由 NettyWriteResponseFilter 在过滤链完成后写出）并扣减在途数，
+ * 上游 5xx 或连接异常计为失败，客户端取消的请求不记录样本
+ */
+@Component
+public class InstanceLoadFilter implements GlobalFilter, Ordered {
+
+    @Resource
+    private InstanceLoadTracker instanceLoadTracker;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Response<ServiceInstance> lbResponse = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return chain.filter(exchange);
+        }
+        InstanceLoadTracker.Stats stats = instanceLoadTracker.begin(lbResponse.getServer());
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        instanceLoadTracker.complete(stats, -1, false);
+                        return;
+                    }
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    boolean failure = signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError());
+                    instanceLoadTracker.complete(stats, System.nanoTime() - start, failure);
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
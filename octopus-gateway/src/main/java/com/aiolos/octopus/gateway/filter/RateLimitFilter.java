@@ -2,30 +2,35 @@ package com.aiolos.octopus.gateway.filter;
 
 import com.aiolos.common.enums.error.ErrorEnum;
 import com.aiolos.common.model.response.CommonResponse;
+import com.aiolos.octopus.gateway.cache.LocalBanCache;
 import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import com.aiolos.octopus.gateway.config.RateLimitRuleIndex;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import com.aiolos.octopus.gateway.ratelimit.HeavyHitterTracker;
+import com.aiolos.octopus.gateway.ratelimit.LocalFallbackLimiter;
+import com.aiolos.octopus.gateway.ratelimit.PermitLease;
+import com.aiolos.octopus.gateway.ratelimit.RateLimitScriptClient;
+import com.aiolos.octopus.gateway.ratelimit.RedisLimiterGuard;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
-import org.springframework.cloud.gateway.route.Route;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.util.EnumMap;
 import java.util.List;
-
-import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
@@ -34,86 +39,157 @@ public class RateLimitFilter implements GlobalFilter, Ordered {
     @Resource
     private GatewayRateLimitProperties rateLimitProperties;
     @Resource
-    private ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
-    private final RedisScript<Long> rateLimitScript = createRateLimitScript();
+    private RateLimitRuleIndex rateLimitRuleIndex;
+    @Resource
+    private RateLimitScriptClient rateLimitScriptClient;
+    @Resource
+    private LocalBanCache localBanCache;
+    @Resource
+    private RedisLimiterGuard redisLimiterGuard;
+    @Resource
+    private LocalFallbackLimiter localFallbackLimiter;
+    @Resource
+    private HeavyHitterTracker heavyHitterTracker;
+    // 各算法脚本 KEYS 的派生键后缀，顺序与脚本中的 KEYS 下标一致，租约脚本与固定窗口共用计数器
+    private static final Map<GatewayRateLimitProperties.Algorithm, String[]> SCRIPT_KEY_SUFFIXES = Map.of(
+            GatewayRateLimitProperties.Algorithm.FIXED_WINDOW, new String[]{"lock", "counter"},
+            GatewayRateLimitProperties.Algorithm.GCRA, new String[]{"gcra"},
+            GatewayRateLimitProperties.Algorithm.SLIDING_WINDOW, new String[]{"sliding"});
+    private final Map<GatewayRateLimitProperties.Algorithm, RateLimitScriptClient.Script> rateLimitScripts =
+            new EnumMap<>(GatewayRateLimitProperties.Algorithm.class);
+    private RateLimitScriptClient.Script leaseScript;
+    // 按限流键保存本地租约，长时间无访问的键自动淘汰
+    private final Map<String, PermitLease> leases = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .<String, PermitLease>build()
+            .asMap();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
 
-        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
-        if (route == null) {
+        GatewayRequestContext context = GatewayRequestContext.get(exchange);
+        // 未路由或命中 IP 豁免名单的请求不限流
+        if (!context.isRouted() || exchange.getAttribute(IpAccessFilter.RATE_LIMIT_EXEMPT_ATTR) != null) {
             return chain.filter(exchange);
         }
 
-        String serviceId = route.getUri().getHost();
-        String requestPath = exchange.getRequest().getPath().value();
-
-        // 1. 获取服务级默认配置
-        GatewayRateLimitProperties.ServiceConfig serviceConfig = rateLimitProperties.findServiceConfig(serviceId);
-
-        if (serviceConfig == null) {
+        // 按服务与路径模板查找合并后的限流规则
+        RateLimitRuleIndex.Rule rule = rateLimitRuleIndex.resolve(context.getServiceId(), context.getSegments());
+        if (rule == null) {
             return chain.filter(exchange);
         }
+        int maxRequests = rule.maxRequests();
+        int timeWindow = rule.timeWindow();
+        int banTime = rule.banTime();
+        int leaseSize = rule.leaseSize();
+        GatewayRateLimitProperties.Algorithm algorithm = rule.algorithm();
+
+        // 按规则配置的客户端标识（可信代理后的 IP、登录用户、设备）生成限流键
+        String baseKey = rule.key(exchange);
+        if (baseKey == null) {
+            return chain.filter(exchange);
+        }
+        heavyHitterTracker.record(rule.keyPrefix(), baseKey);
 
-        // 2. 查找接口级配置
-        GatewayRateLimitProperties.InterfaceConfig interfaceConfig = rateLimitProperties.findInterfaceConfig(serviceId, requestPath);
-
-        // 3. 接口下的配置优先级高于默认的
-        int maxRequests = interfaceConfig != null && interfaceConfig.getMaxRequests() != null
-                ? interfaceConfig.getMaxRequests()
-                : serviceConfig.getDefaultConfig().getMaxRequests();
-
-        int timeWindow = interfaceConfig != null && interfaceConfig.getTimeWindow() != null
-                ? interfaceConfig.getTimeWindow()
-                : serviceConfig.getDefaultConfig().getTimeWindow();
-
-        int banTime = interfaceConfig != null && interfaceConfig.getBanTime() != null
-                ? interfaceConfig.getBanTime()
-                : serviceConfig.getDefaultConfig().getBanTime();
-        
-        String path = exchange.getRequest().getPath().value();
-        String ip = exchange.getRequest().getRemoteAddress().getAddress().getHostAddress();
-        String baseKey = String.format("rate-limit:%s:%s", path, ip);
+        // 本地已记录封禁的客户端直接拒绝，不再访问 Redis
+        if (localBanCache.isBanned(baseKey)) {
+            return reject(exchange);
+        }
 
-        return reactiveRedisTemplate.execute(
-                        rateLimitScript,
-                        List.of(baseKey),
-                        List.of(maxRequests, timeWindow, banTime)
-                )
-                .next()
-                .timeout(Duration.ofSeconds(2))
+        GatewayRateLimitProperties.LocalBan localBan = rateLimitProperties.getLocalBan();
+        int broadcast = localBan.isEnabled() && localBan.isBroadcast() ? 1 : 0;
+        // 租借依赖固定窗口的计数器，其他算法忽略 leaseSize
+        if (leaseSize > 1 && algorithm == GatewayRateLimitProperties.Algorithm.FIXED_WINDOW) {
+            return leases.computeIfAbsent(baseKey, key -> new PermitLease())
+                    .acquire(unused -> lease(baseKey, maxRequests, timeWindow, banTime, broadcast, leaseSize))
+                    .onErrorResume(e -> {
+                        // Redis 异常或熔断时切换到本地近似限流
+                        logFallback("限流租约续租失败, 使用本地限流: {}", e);
+                        return Mono.just(fallbackAcquire(baseKey, maxRequests, timeWindow, banTime));
+                    })
+                    .flatMap(acquired -> acquired ? chain.filter(exchange) : reject(exchange));
+        }
+        List<String> scriptKeys = RateLimitScriptClient.hashTagged(baseKey, SCRIPT_KEY_SUFFIXES.get(algorithm));
+        return redisLimiterGuard.protect(rateLimitScriptClient.evalInteger(rateLimitScripts.get(algorithm), scriptKeys, maxRequests, timeWindow, banTime, broadcast, baseKey))
                 .onErrorResume(e -> {
-                    log.error("限流lua脚本执行失败: {}", e.getMessage());
-                    return Mono.just(0L);
+                    // Redis 超时、异常或熔断时不再放行全部请求，切换到本地近似限流
+                    logFallback("限流lua脚本执行失败, 使用本地限流: {}", e);
+                    return Mono.just(fallbackAcquire(baseKey, maxRequests, timeWindow, banTime) ? 0L : TimeUnit.SECONDS.toMillis(banTime));
                 })
-                .flatMap(result -> {
-                    if (result != null && result == 1) {
+                .flatMap(banTtlMillis -> {
+                    // 脚本返回剩余封禁毫秒数，大于 0 即处于封禁期
+                    if (banTtlMillis != null && banTtlMillis > 0) {
                         log.warn("触发限流: {}", baseKey);
-                        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
-                        exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
-                        CommonResponse<Object> errorResp = CommonResponse.error(ErrorEnum.SYSTEM_GATEWAY_ERROR);
-                        DataBuffer dataBuffer = null;
-                        try {
-                            dataBuffer = exchange.getResponse().bufferFactory().wrap(objectMapper.writeValueAsBytes(errorResp));
-                        } catch (JsonProcessingException e) {
-                            return Mono.error(new RuntimeException(e));
-                        }
-                        return exchange.getResponse().writeWith(Mono.just(dataBuffer));
+                        localBanCache.ban(baseKey, banTtlMillis);
+                        return reject(exchange);
                     }
                     return chain.filter(exchange);
                 });
     }
 
-    private RedisScript<Long> createRateLimitScript() {
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-        script.setLocation(new ClassPathResource("lua/rate_limit.lua"));
-        script.setResultType(Long.class);
-        return script;
+    /**
+     * 从 Redis 固定窗口计数器批量租借许可
+     * 租约随窗口一起过期，未用完的许可不归还；全局耗尽时脚本写入封禁并返回剩余封禁时间
+     */
+    private Mono<PermitLease.Grant> lease(String baseKey, int maxRequests, int timeWindow, int banTime, int broadcast, int leaseSize) {
+        List<String> scriptKeys = RateLimitScriptClient.hashTagged(baseKey, SCRIPT_KEY_SUFFIXES.get(GatewayRateLimitProperties.Algorithm.FIXED_WINDOW));
+        return redisLimiterGuard.protect(rateLimitScriptClient.evalMulti(leaseScript, scriptKeys, maxRequests, timeWindow, banTime, broadcast, leaseSize, baseKey))
+                .map(result -> {
+                    long granted = ((Number) result.get(0)).longValue();
+                    long ttlMillis = ((Number) result.get(1)).longValue();
+                    if (granted <= 0) {
+                        log.warn("触发限流: {}", baseKey);
+                        localBanCache.ban(baseKey, ttlMillis);
+                        return new PermitLease.Grant(0, 0);
+                    }
+                    return new PermitLease.Grant(granted, ttlMillis);
+                });
+    }
+
+    /**
+     * 熔断期间每个请求都会被短路，状态变更已由 RedisLimiterGuard 告警，短路只记 debug 日志，避免错误日志随流量刷屏
+     */
+    private static void logFallback(String message, Throwable e) {
+        if (RedisLimiterGuard.isShortCircuited(e)) {
+            log.debug(message, e.getMessage());
+        } else {
+            log.error(message, e.getMessage());
+        }
+    }
+
+    private boolean fallbackAcquire(String baseKey, int maxRequests, int timeWindow, int banTime) {
+        if (localFallbackLimiter.tryAcquire(baseKey, maxRequests, timeWindow)) {
+            return true;
+        }
+        localBanCache.ban(baseKey, TimeUnit.SECONDS.toMillis(banTime));
+        return false;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        CommonResponse<Object> errorResp = CommonResponse.error(ErrorEnum.SYSTEM_GATEWAY_ERROR);
+        DataBuffer dataBuffer = null;
+        try {
+            dataBuffer = exchange.getResponse().bufferFactory().wrap(objectMapper.writeValueAsBytes(errorResp));
+        } catch (JsonProcessingException e) {
+            return Mono.error(new RuntimeException(e));
+        }
+        return exchange.getResponse().writeWith(Mono.just(dataBuffer));
+    }
+
+    @PostConstruct
+    public void loadScripts() {
+        rateLimitScripts.put(GatewayRateLimitProperties.Algorithm.FIXED_WINDOW, rateLimitScriptClient.load("lua/rate_limit.lua"));
+        rateLimitScripts.put(GatewayRateLimitProperties.Algorithm.GCRA, rateLimitScriptClient.load("lua/rate_limit_gcra.lua"));
+        rateLimitScripts.put(GatewayRateLimitProperties.Algorithm.SLIDING_WINDOW, rateLimitScriptClient.load("lua/rate_limit_sliding.lua"));
+        leaseScript = rateLimitScriptClient.load("lua/rate_limit_lease.lua");
     }
 
     @Override
     public int getOrder() {
-        return Ordered.HIGHEST_PRECEDENCE + 1;
+        return Ordered.HIGHEST_PRECEDENCE + 3;
     }
 }
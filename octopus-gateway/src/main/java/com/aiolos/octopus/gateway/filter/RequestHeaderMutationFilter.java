@@ -0,0 +1,29 @@
+package com.aiolos.octopus.gateway.filter;
+
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * 请求头写入过滤器
+ * 将各过滤器累积在 {@link GatewayRequestContext} 中的请求头修改一次性写入请求，整条链只复制一次请求头
+ * 在负载均衡之前执行，负载均衡器与下游服务都能看到最终的请求头
+ */
+@Component
+public class RequestHeaderMutationFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return chain.filter(GatewayRequestContext.get(exchange).applyTo(exchange));
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 1;
+    }
+}
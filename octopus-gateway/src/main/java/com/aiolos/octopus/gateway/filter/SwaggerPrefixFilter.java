@@ -1,8 +1,13 @@
 package com.aiolos.octopus.gateway.filter;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.aiolos.common.model.response.CommonResponse;
+import com.aiolos.octopus.gateway.cache.ApiDocsCache;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import com.aiolos.octopus.gateway.discovery.ApiDocsHealthProber;
+import com.aiolos.octopus.gateway.util.OpenApiPathsRewriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
@@ -12,14 +17,17 @@ import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -29,9 +37,15 @@ public class SwaggerPrefixFilter implements GlobalFilter, Ordered {
     private static final Pattern API_DOCS_PATTERN = Pattern.compile("^/([^/]+)/v3/api-docs$");
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Resource
+    private ApiDocsCache apiDocsCache;
+
+    @Resource
+    private ApiDocsHealthProber apiDocsHealthProber;
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        String path = exchange.getRequest().getURI().getPath();
+        String path = GatewayRequestContext.get(exchange).getPath();
         java.util.regex.Matcher matcher = API_DOCS_PATTERN.matcher(path);
 
         if (!matcher.matches()) {
@@ -41,86 +55,107 @@ public class SwaggerPrefixFilter implements GlobalFilter, Ordered {
         final String serviceId = matcher.group(1);
         final String pathPrefix = "/" + serviceId;
 
-        return chain.filter(exchange.mutate().response(new ModifiedResponse(exchange, serviceId, pathPrefix)).build());
+        // 命中缓存时直接返回改写后的文档，不再访问服务提供方
+        ApiDocsCache.Document cached = apiDocsCache.getApiDocs(serviceId);
+        if (cached != null) {
+            return cached.write(exchange);
+        }
+        // 探测为不可用的服务直接返回 503，不等待上游超时
+        if (apiDocsHealthProber.isUnhealthy(serviceId)) {
+            return unavailable(exchange);
+        }
+        String revision = apiDocsCache.revision(serviceId);
+        // 压缩由网关缓存负责，要求上游返回未压缩的文档以便流式改写
+        GatewayRequestContext.get(exchange).removeHeader(HttpHeaders.ACCEPT_ENCODING);
+        return chain.filter(exchange.mutate().response(new ModifiedResponse(exchange, serviceId, pathPrefix, revision)).build());
     }
 
+    /**
+     * 流式改写 api-docs 响应：上游数据块到达即解析并改写 paths 下的键，改写结果按块写出，不再合并整个响应体
+     * 写出的同时收集改写结果，响应完整结束后放入缓存
+     */
     class ModifiedResponse extends ServerHttpResponseDecorator {
         private final String serviceId;
         private final String pathPrefix;
+        private final String revision;
 
-        public ModifiedResponse(ServerWebExchange exchange, String serviceId, String pathPrefix) {
+        public ModifiedResponse(ServerWebExchange exchange, String serviceId, String pathPrefix, String revision) {
             super(exchange.getResponse());
             this.serviceId = serviceId;
             this.pathPrefix = pathPrefix;
+            this.revision = revision;
         }
 
         @Override
         public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
-            return DataBufferUtils.join(body)
-                    .flatMap(dataBuffer -> {
+            // 错误响应不是 OpenAPI 文档，原样透传
+            if (getStatusCode() != null && !getStatusCode().is2xxSuccessful()) {
+                return super.writeWith(body);
+            }
+            OpenApiPathsRewriter rewriter;
+            try {
+                rewriter = new OpenApiPathsRewriter(objectMapper.getFactory(), pathPrefix);
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+            // 改写后长度未知，改为分块传输
+            HttpHeaders headers = getDelegate().getHeaders();
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            ByteArrayOutputStream collected = new ByteArrayOutputStream();
+            AtomicBoolean oversized = new AtomicBoolean();
+            Flux<DataBuffer> rewritten = Flux.from(body)
+                    .map(buffer -> {
                         try {
-                            // 读取原始内容
-                            byte[] content = readFullContent(dataBuffer);
-
-                            // 处理内容
-                            byte[] modifiedContent = processContent(content);
-
-                            // 创建新缓冲区
-                            DataBuffer newBuffer = bufferFactory().wrap(modifiedContent);
-
-                            // 设置必要响应头
-                            HttpHeaders headers = getDelegate().getHeaders();
-                            headers.setContentLength(modifiedContent.length);
-                            headers.remove(HttpHeaders.TRANSFER_ENCODING);
-
-                            // 写入修改后的内容
-                            return super.writeWith(Flux.just(newBuffer));
-                        } catch (Exception e) {
-                            handleProcessingError(dataBuffer, e);
-                            return Mono.error(e);
+                            byte[] chunk = new byte[buffer.readableByteCount()];
+                            buffer.read(chunk);
+                            return rewriter.feed(chunk);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        } finally {
+                            DataBufferUtils.release(buffer);
                         }
                     })
-                    .onErrorResume(this::handleFinalError);
-        }
-
-        private byte[] readFullContent(DataBuffer buffer) {
-            byte[] bytes = new byte[buffer.readableByteCount()];
-            buffer.read(bytes);
-            DataBufferUtils.release(buffer);
-            return bytes;
-        }
-
-        private void handleProcessingError(DataBuffer buffer, Throwable e) {
-            DataBufferUtils.release(buffer);
-            log.error("SWAGGER文档处理失败 [{}]", serviceId, e);
-        }
-
-        private Mono<Void> handleFinalError(Throwable e) {
-            log.error("响应处理链异常", e);
-            getDelegate().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
-            return getDelegate().writeWith(Flux.empty());
+                    .concatWith(Mono.fromCallable(rewriter::finish))
+                    .filter(bytes -> bytes.length > 0)
+                    .doOnNext(bytes -> {
+                        if (oversized.get()) {
+                            return;
+                        }
+                        if (collected.size() + bytes.length > ApiDocsCache.MAX_DOCUMENT_BYTES) {
+                            // 超大文档不缓存，释放已收集的内容
+                            oversized.set(true);
+                            collected.reset();
+                            return;
+                        }
+                        collected.write(bytes, 0, bytes.length);
+                    })
+                    .doOnComplete(() -> {
+                        if (!oversized.get()) {
+                            apiDocsCache.putApiDocs(serviceId, revision, collected.toByteArray());
+                        }
+                    })
+                    .map(bytes -> bufferFactory().wrap(bytes))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .doOnError(e -> log.error("SWAGGER文档处理失败 [{}]", serviceId, e));
+            return super.writeWith(rewritten);
         }
+    }
 
-        private byte[] processContent(byte[] originalBytes) throws IOException {
-            String originalJson = new String(originalBytes, StandardCharsets.UTF_8);
-            JsonNode rootNode = objectMapper.readTree(originalJson);
-
-            // 处理paths节点
-            if (rootNode.has("paths")) {
-                ObjectNode modifiedPaths = objectMapper.createObjectNode();
-                rootNode.get("paths").fields().forEachRemaining(entry -> {
-                    String newPath = pathPrefix + entry.getKey();
-                    modifiedPaths.set(newPath, entry.getValue());
-                });
-                ((ObjectNode) rootNode).set("paths", modifiedPaths);
-            }
-
-            return objectMapper.writeValueAsBytes(rootNode);
+    private Mono<Void> unavailable(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        CommonResponse<Object> errorResp = CommonResponse.error(503, "接口文档暂不可用");
+        DataBuffer dataBuffer;
+        try {
+            dataBuffer = exchange.getResponse().bufferFactory().wrap(objectMapper.writeValueAsBytes(errorResp));
+        } catch (JsonProcessingException e) {
+            return Mono.error(new RuntimeException(e));
         }
+        return exchange.getResponse().writeWith(Mono.just(dataBuffer));
     }
 
     @Override
     public int getOrder() {
-        return Ordered.HIGHEST_PRECEDENCE;
+        return Ordered.HIGHEST_PRECEDENCE + 2;
     }
 }
@@ -1,96 +1,244 @@
 package com.aiolos.octopus.gateway.filter;
 
 import com.aiolos.common.model.response.CommonResponse;
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import com.aiolos.octopus.gateway.config.SeckillActivityIndex;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import com.aiolos.octopus.gateway.ratelimit.PermitLease;
+import com.aiolos.octopus.gateway.ratelimit.SeckillBuckets;
+import com.aiolos.octopus.gateway.ratelimit.SeckillWaitingRoom;
+import com.aiolos.octopus.gateway.util.RendezvousRing;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
+import com.google.common.cache.CacheBuilder;
 import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.ConsumptionProbe;
-import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.distributed.AsyncBucketProxy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 秒杀令牌桶限流过滤器 (基于 Bucket4j 实现)
+ * 使用 Bucket4j 异步代理，Redis CAS 往返不阻塞事件循环线程；超时或失败时按 failOpen 配置放行或拒绝
+ * 配置了秒杀活动时，活动容量拆分到多个分片令牌桶，按用户或设备哈希选择分片，避免所有网关实例争抢同一个 Redis 热点键
+ * 活动开启排队时，令牌不足的请求领取排队票据而不是直接失败，轮到后携带票据重试即可放行
  */
 @Slf4j
 @Component
 public class TokenBucketRateLimitFilter implements GlobalFilter, Ordered {
 
     @Resource
-    private ProxyManager<byte[]> proxyManager;
+    private SeckillBuckets seckillBuckets;
+
+    @Resource
+    private SeckillWaitingRoom seckillWaitingRoom;
+
+    @Resource
+    private SeckillActivityIndex seckillActivityIndex;
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
     
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // 默认速率：每秒补充500个令牌
-    private static final int REPLENISH_RATE = 500; 
-    // 桶容量：最大1000个令牌
-    private static final int BURST_CAPACITY = 1000; 
+    // 按令牌桶键保存本地租约
+    private final Map<String, PermitLease> leases = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .<String, PermitLease>build()
+            .asMap();
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        String path = exchange.getRequest().getPath().value();
+        GatewayRequestContext context = GatewayRequestContext.get(exchange);
+        String path = context.getPath();
+        GatewayRateLimitProperties.Seckill config = rateLimitProperties.getSeckill();
+        GatewayRateLimitProperties.Activity activity = seckillActivityIndex.find(context.getSegments());
         
         // 仅拦截秒杀相关接口，如 /seckill/xxx
-        if (!path.contains("/seckill/")) {
+        if (activity == null && !path.contains("/seckill/")) {
             return chain.filter(exchange);
         }
 
-        // 获取或构建 Bucket
-        String bucketKeyStr = "seckill:bucket:" + path;
-        byte[] bucketKey = bucketKeyStr.getBytes();
-        
-        // 使用 Bucket4j 代理管理器获取 Bucket
-        Bucket bucket = proxyManager.builder().build(bucketKey, this::createBucketConfig);
-        
+        if (activity == null) {
+            // 未配置活动的秒杀路径按路径使用单个令牌桶
+            String bucketKeyStr = SeckillBuckets.pathBucketKey(path);
+            return handle(exchange, chain, config, tryConsume(bucketKeyStr, SeckillBuckets.pathConfig(config), config),
+                    () -> reject(exchange, bucketKeyStr));
+        }
+
+        String ticket = exchange.getRequest().getHeaders().getFirst(SeckillWaitingRoom.TICKET_HEADER);
+        if (activity.isQueueEnabled() && StringUtils.isNotBlank(ticket)) {
+            // 携带排队票据的请求：已轮到则直接放行（令牌已在推进队头时扣除），未轮到返回当前排队位置
+            return seckillWaitingRoom.claim(activity, ticket)
+                    .onErrorResume(e -> {
+                        log.error("秒杀排队票据校验失败: {}", e.toString());
+                        return Mono.empty();
+                    })
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(claimed -> {
+                        if (claimed.isEmpty()) {
+                            return acquireForActivity(exchange, chain, config, activity);
+                        }
+                        if (claimed.get() == SeckillWaitingRoom.CLAIMED) {
+                            return chain.filter(exchange);
+                        }
+                        return respondQueued(exchange, ticket, -claimed.get());
+                    });
+        }
+        return acquireForActivity(exchange, chain, config, activity);
+    }
+
+    /**
+     * 按用户或设备选择分片消费令牌，令牌不足且开启排队时发放排队票据
+     * 开启排队且队列中已有人等待时不再消费令牌，直接排到队尾，避免新请求抢在持票用户之前拿走令牌
+     */
+    private Mono<Void> acquireForActivity(ServerWebExchange exchange, GatewayFilterChain chain,
+                                          GatewayRateLimitProperties.Seckill config,
+                                          GatewayRateLimitProperties.Activity activity) {
+        int shards = SeckillBuckets.shards(activity);
+        int shard = (int) ((RendezvousRing.mix(shardKey(GatewayRequestContext.get(exchange))) >>> 1) % shards);
+        String bucketKeyStr = SeckillBuckets.shardBucketKey(activity, shard);
+        if (activity.isQueueEnabled() && seckillWaitingRoom.hasWaiters(activity)) {
+            return enqueue(exchange, activity, bucketKeyStr);
+        }
+        BucketConfiguration bucketConfig = SeckillBuckets.shardConfig(activity, config);
+        // 本分片耗尽时依次向后续分片借用，借用次数不超过分片数 - 1
+        int borrowAttempts = Math.min(Math.max(0, activity.getBorrowAttempts()), shards - 1);
+        Mono<Boolean> acquired = tryConsume(bucketKeyStr, bucketConfig, config)
+                .flatMap(consumed -> consumed || borrowAttempts == 0
+                        ? Mono.just(consumed)
+                        : Flux.range(1, borrowAttempts)
+                        .concatMap(offset -> tryConsume(SeckillBuckets.shardBucketKey(activity, (shard + offset) % shards), bucketConfig, config))
+                        .filter(Boolean::booleanValue)
+                        .next()
+                        .defaultIfEmpty(false));
+        if (!activity.isQueueEnabled()) {
+            return handle(exchange, chain, config, acquired, () -> reject(exchange, bucketKeyStr));
+        }
+        return handle(exchange, chain, config, acquired, () -> enqueue(exchange, activity, bucketKeyStr));
+    }
+
+    /**
+     * 发放排队票据，排队人数已满或排队失败时按限流拒绝
+     */
+    private Mono<Void> enqueue(ServerWebExchange exchange, GatewayRateLimitProperties.Activity activity, String bucketKeyStr) {
+        return seckillWaitingRoom.enqueue(activity)
+                .flatMap(queued -> respondQueued(exchange, queued.ticket(), queued.position()))
+                .onErrorResume(e -> {
+                    log.error("秒杀排队失败: {}", e.toString());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> reject(exchange, bucketKeyStr)));
+    }
+
+    private Mono<Void> handle(ServerWebExchange exchange, GatewayFilterChain chain, GatewayRateLimitProperties.Seckill config,
+                              Mono<Boolean> acquired, Supplier<Mono<Void>> onRejected) {
+        return acquired
+                .onErrorResume(e -> {
+                    log.error("令牌桶限流调用失败, failOpen={}, error={}", config.isFailOpen(), e.toString());
+                    return Mono.just(config.isFailOpen());
+                })
+                .flatMap(consumed -> consumed ? chain.filter(exchange) : onRejected.get());
+    }
+
+    /**
+     * 从指定令牌桶消费一个令牌
+     */
+    private Mono<Boolean> tryConsume(String bucketKeyStr, BucketConfiguration bucketConfig, GatewayRateLimitProperties.Seckill config) {
+        AsyncBucketProxy bucket = seckillBuckets.bucket(bucketKeyStr, bucketConfig);
+
+        if (config.getLeaseSize() > 1) {
+            // 租借模式：本地租约内的请求不访问 Redis，租约到期时把未用完的令牌归还令牌桶
+            // 并发请求多于租到的令牌时由 PermitLease 再次续租，令牌桶返回 0 个令牌才判定限流
+            return leases.computeIfAbsent(bucketKeyStr, key -> new PermitLease())
+                    .acquire(unused -> {
+                        Mono<Void> giveBack = unused > 0 ? Mono.fromFuture(() -> bucket.addTokens(unused)) : Mono.empty();
+                        return giveBack.then(Mono.fromFuture(() -> bucket.tryConsumeAsMuchAsPossible(config.getLeaseSize())))
+                                .timeout(Duration.ofMillis(config.getTimeoutMillis()))
+                                .map(granted -> new PermitLease.Grant(granted, config.getLeaseMillis()));
+                    });
+        }
         // 尝试消费1个令牌
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
-        
-        if (probe.isConsumed()) {
-            // 获取令牌成功，放行
-            return chain.filter(exchange);
-        } else {
-            // 获取令牌失败，触发限流
-            log.warn("秒杀活动火爆，触发令牌桶限流: {}", bucketKeyStr);
-            exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
-            exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
-            
-            // 返回活动火爆提示
-            CommonResponse<Object> errorResp = CommonResponse.error(429, "活动火爆，请重试");
-            DataBuffer dataBuffer;
-            try {
-                dataBuffer = exchange.getResponse().bufferFactory().wrap(objectMapper.writeValueAsBytes(errorResp));
-            } catch (JsonProcessingException e) {
-                return Mono.error(new RuntimeException(e));
-            }
-            return exchange.getResponse().writeWith(Mono.just(dataBuffer));
+        return Mono.fromFuture(() -> bucket.tryConsumeAndReturnRemaining(1))
+                .timeout(Duration.ofMillis(config.getTimeoutMillis()))
+                .map(ConsumptionProbe::isConsumed);
+    }
+
+    /**
+     * 选择分片的哈希键，同一用户或设备固定落在同一分片
+     */
+    private long shardKey(GatewayRequestContext context) {
+        if (context.getUserId() != null) {
+            return context.getUserId();
+        }
+        if (StringUtils.isNotBlank(context.getDeviceId())) {
+            return RendezvousRing.hash(context.getDeviceId());
+        }
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, String bucketKeyStr) {
+        // 获取令牌失败，触发限流
+        log.warn("秒杀活动火爆，触发令牌桶限流: {}", bucketKeyStr);
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        // 返回活动火爆提示
+        CommonResponse<Object> errorResp = CommonResponse.error(429, "活动火爆，请重试");
+        DataBuffer dataBuffer;
+        try {
+            dataBuffer = exchange.getResponse().bufferFactory().wrap(objectMapper.writeValueAsBytes(errorResp));
+        } catch (JsonProcessingException e) {
+            return Mono.error(new RuntimeException(e));
         }
+        return exchange.getResponse().writeWith(Mono.just(dataBuffer));
     }
 
-    private BucketConfiguration createBucketConfig() {
-        return BucketConfiguration.builder()
-                .addLimit(Bandwidth.builder()
-                        .capacity(BURST_CAPACITY)
-                        .refillGreedy(REPLENISH_RATE, Duration.ofSeconds(1))
-                        .build())
-                .build();
+    /**
+     * 返回排队票据与前方人数，客户端轮询 /seckill-queue/status 直到轮到后携带票据重试
+     */
+    private Mono<Void> respondQueued(ServerWebExchange exchange, String ticket, long position) {
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(SeckillWaitingRoom.TICKET_HEADER, ticket);
+        headers.set(SeckillWaitingRoom.POSITION_HEADER, String.valueOf(position));
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        CommonResponse<Object> errorResp = CommonResponse.error(429, "活动火爆，已为您排队，请稍候");
+        DataBuffer dataBuffer;
+        try {
+            dataBuffer = exchange.getResponse().bufferFactory().wrap(objectMapper.writeValueAsBytes(errorResp));
+        } catch (JsonProcessingException e) {
+            return Mono.error(new RuntimeException(e));
+        }
+        return exchange.getResponse().writeWith(Mono.just(dataBuffer));
     }
 
     @Override
     public int getOrder() {
-        return Ordered.HIGHEST_PRECEDENCE + 3;
+        return Ordered.HIGHEST_PRECEDENCE + 5;
     }
 }
 
@@ -0,0 +1,32 @@
+package com.aiolos.octopus.gateway.loadbalancer;
+
+import com.aiolos.octopus.gateway.config.ApolloGrayRuleService;
+import com.aiolos.octopus.gateway.config.GatewayLoadBalancerProperties;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * 每个服务独立的负载均衡子上下文配置
+ * 通过 @LoadBalancerClients(defaultConfiguration) 引用，不能加 @Configuration，否则会被主上下文扫描成全局 Bean
+ */
+public class GrayLoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> grayTagLoadBalancer(Environment environment,
+                                                                    LoadBalancerClientFactory loadBalancerClientFactory,
+                                                                    ApolloGrayRuleService apolloGrayRuleService,
+                                                                    InstanceLoadTracker instanceLoadTracker,
+                                                                    GatewayLoadBalancerProperties loadBalancerProperties) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new GrayTagLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId,
+                apolloGrayRuleService,
+                instanceLoadTracker,
+                loadBalancerProperties);
+    }
+}
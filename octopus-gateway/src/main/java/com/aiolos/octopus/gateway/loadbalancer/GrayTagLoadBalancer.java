@@ -0,0 +1,200 @@
+package com.aiolos.octopus.gateway.loadbalancer;
+
+import com.aiolos.octopus.gateway.config.ApolloGrayRuleService;
+import com.aiolos.octopus.gateway.config.GatewayLoadBalancerProperties;
+import com.aiolos.octopus.gateway.config.GrayDecision;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import com.aiolos.octopus.gateway.util.RendezvousRing;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.SelectedInstanceCallback;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 灰度标签负载均衡器
+ * 命中灰度且指定了实例标签时，在元数据标签匹配的实例内按加权一致性哈希选择，保证同一用户稳定落到同一实例
+ * 其余请求按 load-balancer.strategy 选择：默认由 {@link InstanceLoadTracker} 按响应时间 EWMA 与在途请求数二选一，也可配置为轮询
+ * 哈希选中的灰度实例被摘除时，在同标签实例内二选一
+ * 实例列表来自 ServiceInstanceListSupplier，健康检查、缓存与重试均沿用 Spring Cloud LoadBalancer 的默认机制
+ */
+@Slf4j
+public class GrayTagLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    /**
+     * Nacos 实例权重元数据键
+     */
+    private static final String WEIGHT_KEY = "nacos.weight";
+
+    /**
+     * Nacos 实例健康状态元数据键
+     */
+    private static final String HEALTHY_KEY = "nacos.healthy";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+
+    private final String serviceId;
+
+    private final ApolloGrayRuleService apolloGrayRuleService;
+
+    private final InstanceLoadTracker instanceLoadTracker;
+
+    private final GatewayLoadBalancerProperties loadBalancerProperties;
+
+    private final AtomicInteger position = new AtomicInteger(ThreadLocalRandom.current().nextInt(1000));
+
+    private volatile TagRings tagRings;
+
+    public GrayTagLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId,
+                               ApolloGrayRuleService apolloGrayRuleService, InstanceLoadTracker instanceLoadTracker,
+                               GatewayLoadBalancerProperties loadBalancerProperties) {
+        this.supplierProvider = supplierProvider;
+        this.serviceId = serviceId;
+        this.apolloGrayRuleService = apolloGrayRuleService;
+        this.instanceLoadTracker = instanceLoadTracker;
+        this.loadBalancerProperties = loadBalancerProperties;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> {
+            Response<ServiceInstance> response = getInstanceResponse(instances, request);
+            if (supplier instanceof SelectedInstanceCallback callback && response.hasServer()) {
+                callback.selectedServiceInstance(response.getServer());
+            }
+            return response;
+        });
+    }
+
+    private Response<ServiceInstance> getInstanceResponse(List<ServiceInstance> instances, Request request) {
+        if (instances.isEmpty()) {
+            log.warn("No servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+        GatewayRequestContext context = requestContext(request);
+        GrayDecision decision = context == null ? null : context.getGrayDecision();
+        String instanceTag = decision == null ? null : decision.getInstanceTag();
+        // 未命中灰度或未指定实例标签时走默认策略
+        if (decision != null && decision.isHit() && StringUtils.isNotBlank(instanceTag)) {
+            String metaKey = apolloGrayRuleService.getGrayInstanceMetaKey();
+            String tag = instanceTag.toLowerCase(Locale.ROOT);
+            TagRings rings = rings(instances, metaKey);
+            RendezvousRing<ServiceInstance> ring = rings.byTag.get(tag);
+            if (ring != null && ring.size() > 0) {
+                ServiceInstance selected = ring.select(routingKey(context));
+                if (instanceLoadTracker.isEjected(selected)) {
+                    return new DefaultResponse(instanceLoadTracker.choose(rings.groups.get(tag)));
+                }
+                return new DefaultResponse(selected);
+            }
+            log.warn("灰度标签未匹配到实例, serviceId={}, tag={}, metaKey={}", serviceId, instanceTag, metaKey);
+        }
+        if (loadBalancerProperties.getStrategy() == GatewayLoadBalancerProperties.Strategy.P2C_EWMA) {
+            return new DefaultResponse(instanceLoadTracker.choose(instances));
+        }
+        int pos = position.getAndIncrement() & Integer.MAX_VALUE;
+        return new DefaultResponse(instances.get(pos % instances.size()));
+    }
+
+    /**
+     * 获取实例列表对应的标签哈希环
+     * CachingServiceInstanceListSupplier 在缓存有效期内返回同一个列表对象，列表或标签键变化时才重建
+     */
+    private TagRings rings(List<ServiceInstance> instances, String metaKey) {
+        TagRings current = tagRings;
+        if (current != null && current.source == instances && current.metaKey.equals(metaKey)) {
+            return current;
+        }
+        Map<String, List<ServiceInstance>> grouped = new HashMap<>();
+        for (ServiceInstance instance : instances) {
+            Map<String, String> metadata = instance.getMetadata();
+            String tag = metadata == null ? null : metadata.get(metaKey);
+            if (StringUtils.isNotBlank(tag) && isHealthy(metadata) && weight(instance) > 0) {
+                grouped.computeIfAbsent(tag.toLowerCase(Locale.ROOT), key -> new ArrayList<>()).add(instance);
+            }
+        }
+        Map<String, RendezvousRing<ServiceInstance>> byTag = new HashMap<>();
+        grouped.forEach((tag, tagged) ->
+                byTag.put(tag, RendezvousRing.of(tagged, InstanceLoadTracker::instanceKey, GrayTagLoadBalancer::weight)));
+        TagRings rebuilt = new TagRings(instances, metaKey, Collections.unmodifiableMap(byTag), grouped);
+        this.tagRings = rebuilt;
+        return rebuilt;
+    }
+
+    /**
+     * ReactiveLoadBalancerClientFilter 会把 exchange 属性带入 RequestData
+     */
+    private static GatewayRequestContext requestContext(Request request) {
+        if (request != null && request.getContext() instanceof RequestDataContext context
+                && context.getClientRequest() != null && context.getClientRequest().getAttributes() != null) {
+            return (GatewayRequestContext) context.getClientRequest().getAttributes().get(GatewayRequestContext.ATTRIBUTE);
+        }
+        return null;
+    }
+
+    /**
+     * 在同标签实例内做稳定选择的哈希键
+     * 优先使用 userId 保证用户路由稳定，没有 userId 时使用 deviceId，都没有时随机打散
+     */
+    private static long routingKey(GatewayRequestContext context) {
+        if (context.getUserId() != null) {
+            return context.getUserId();
+        }
+        if (StringUtils.isNotBlank(context.getDeviceId())) {
+            return RendezvousRing.hash(context.getDeviceId());
+        }
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    private static boolean isHealthy(Map<String, String> metadata) {
+        return !"false".equalsIgnoreCase(metadata.get(HEALTHY_KEY));
+    }
+
+    /**
+     * 实例权重，未配置时为 1，权重为 0 的实例不接收灰度流量
+     */
+    private static double weight(ServiceInstance instance) {
+        Map<String, String> metadata = instance.getMetadata();
+        return metadata == null ? 1.0 : NumberUtils.toDouble(metadata.get(WEIGHT_KEY), 1.0);
+    }
+
+    private static final class TagRings {
+
+        private final List<ServiceInstance> source;
+
+        private final String metaKey;
+
+        private final Map<String, RendezvousRing<ServiceInstance>> byTag;
+
+        // 各标签的实例列表，哈希选中的实例被摘除时在其中二选一
+        private final Map<String, List<ServiceInstance>> groups;
+
+        private TagRings(List<ServiceInstance> source, String metaKey, Map<String, RendezvousRing<ServiceInstance>> byTag,
+                         Map<String, List<ServiceInstance>> groups) {
+            this.source = source;
+            this.metaKey = metaKey;
+            this.byTag = byTag;
+            this.groups = groups;
+        }
+    }
+}
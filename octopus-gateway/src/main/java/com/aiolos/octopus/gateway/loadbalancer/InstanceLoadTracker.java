@@ -0,0 +1,262 @@
+package com.aiolos.octopus.gateway.loadbalancer;
+
+import com.aiolos.octopus.gateway.config.GatewayLoadBalancerProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 实例负载统计
+ * 由 InstanceLoadFilter 在负载均衡之后记录每个实例的在途请求数与响应时间（峰值敏感的时间衰减 EWMA），
+ * 负载均衡器据此做二选一（Power of Two Choices）：随机取两个实例，选择 EWMA * (在途请求数 + 1) 较小的一个，
+ * GC 停顿或冷启动的实例响应变慢、在途请求堆积后自然少分流量
+ * 连续失败或 EWMA 超过阈值的实例在一段时间内摘除，同一服务摘除比例有上限，避免全部实例被摘除
+ * 统计保存在进程内，各网关实例独立统计
+ */
+@Slf4j
+@Component
+public class InstanceLoadTracker {
+
+    @Resource
+    private GatewayLoadBalancerProperties loadBalancerProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ServiceStats> services = new ConcurrentHashMap<>();
+
+    private Disposable sweeper;
+
+    @PostConstruct
+    public void start() {
+        sweeper = Flux.interval(Duration.ofSeconds(60))
+                .onBackpressureDrop()
+                .subscribe(tick -> sweep());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+    }
+
+    /**
+     * 在实例列表中随机取两个实例，选择代价较小的一个，已摘除的实例代价最大；只有一个实例时直接返回
+     */
+    public ServiceInstance choose(List<ServiceInstance> instances) {
+        int size = instances.size();
+        if (size == 1) {
+            return instances.get(0);
+        }
+        long now = System.nanoTime();
+        long decayNanos = decayNanos();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // 两个实例都在摘除期时重抽一次，摘除比例有上限，重抽后仍都被摘除的概率很低
+        for (int attempt = 0; ; attempt++) {
+            int i = random.nextInt(size);
+            int j = random.nextInt(size - 1);
+            if (j >= i) {
+                j++;
+            }
+            Stats first = stats(instances.get(i));
+            Stats second = stats(instances.get(j));
+            if (attempt == 0 && size > 2 && first.isEjected(now) && second.isEjected(now)) {
+                continue;
+            }
+            return cost(first, second, now, decayNanos) <= cost(second, first, now, decayNanos) ? instances.get(i) : instances.get(j);
+        }
+    }
+
+    /**
+     * 实例是否处于摘除期
+     */
+    public boolean isEjected(ServiceInstance instance) {
+        return stats(instance).isEjected(System.nanoTime());
+    }
+
+    /**
+     * 开始一次请求，在途数加一
+     */
+    public Stats begin(ServiceInstance instance) {
+        Stats stats = stats(instance);
+        stats.inFlight.incrementAndGet();
+        stats.lastUsed = System.nanoTime();
+        return stats;
+    }
+
+    /**
+     * 请求结束，在途数减一并记录结果
+     *
+     * @param latencyNanos 响应时间，请求被客户端取消时为负数，只减在途数不记录样本
+     * @param failure      上游返回 5xx 或连接异常
+     */
+    public void complete(Stats stats, long latencyNanos, boolean failure) {
+        stats.inFlight.decrementAndGet();
+        if (latencyNanos < 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        stats.observe(latencyNanos, failure, now, decayNanos());
+        GatewayLoadBalancerProperties.Outlier outlier = loadBalancerProperties.getOutlier();
+        if (!outlier.isEnabled() || stats.isEjected(now)) {
+            return;
+        }
+        boolean tooManyErrors = outlier.getConsecutiveErrors() > 0 && stats.consecutiveErrors >= outlier.getConsecutiveErrors();
+        boolean tooSlow = outlier.getLatencyThresholdMillis() > 0 && stats.samples >= outlier.getMinSamples()
+                && stats.ewmaNanos > TimeUnit.MILLISECONDS.toNanos(outlier.getLatencyThresholdMillis());
+        if (tooManyErrors || tooSlow) {
+            eject(stats, outlier, now, tooManyErrors ? "连续失败" : "响应过慢");
+        }
+    }
+
+    private void eject(Stats stats, GatewayLoadBalancerProperties.Outlier outlier, long now, String reason) {
+        ServiceStats service = stats.service;
+        synchronized (service) {
+            int total = service.instances.size();
+            int ejected = 0;
+            for (Stats other : service.instances.values()) {
+                if (other.isEjected(now)) {
+                    ejected++;
+                }
+            }
+            if ((ejected + 1) * 100 > total * outlier.getMaxEjectionPercent()) {
+                log.warn("实例异常但摘除比例已达上限, serviceId={}, instance={}, reason={}", service.serviceId, stats.key, reason);
+                return;
+            }
+            stats.ejectedUntil = now + TimeUnit.SECONDS.toNanos(outlier.getEjectionSeconds());
+        }
+        log.warn("摘除异常实例, serviceId={}, instance={}, reason={}, consecutiveErrors={}, ewmaMillis={}",
+                service.serviceId, stats.key, reason, stats.consecutiveErrors, TimeUnit.NANOSECONDS.toMillis((long) stats.ewmaNanos));
+        meterRegistry.counter("gateway.load-balancer.ejection", "service", service.serviceId).increment();
+    }
+
+    /**
+     * 二选一的代价，没有样本（或摘除刚到期）的实例沿用另一个实例的 EWMA，由在途请求数决定
+     * EWMA 读取时按距上次样本的时间向 0 衰减，变慢后少分流量的实例空闲一段时间后会重新被选中试探
+     */
+    private static double cost(Stats stats, Stats other, long now, long decayNanos) {
+        if (stats.isEjected(now)) {
+            return Double.MAX_VALUE;
+        }
+        double ewma = stats.hasSamples(now) ? stats.decayedEwma(now, decayNanos)
+                : other.hasSamples(now) ? other.decayedEwma(now, decayNanos) : 1;
+        return ewma * (stats.inFlight.get() + 1);
+    }
+
+    private long decayNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(1, loadBalancerProperties.getDecayMillis()));
+    }
+
+    private Stats stats(ServiceInstance instance) {
+        String serviceId = StringUtils.defaultString(instance.getServiceId());
+        ServiceStats service = services.computeIfAbsent(serviceId, ServiceStats::new);
+        return service.instances.computeIfAbsent(instanceKey(instance), key -> new Stats(service, key));
+    }
+
+    /**
+     * 清理长时间没有请求的实例统计，已下线的实例不再占用内存
+     */
+    private void sweep() {
+        long deadline = System.nanoTime() - TimeUnit.SECONDS.toNanos(loadBalancerProperties.getIdleSeconds());
+        services.values().forEach(service -> service.instances.values()
+                .removeIf(stats -> stats.inFlight.get() == 0 && stats.lastUsed - deadline < 0));
+        services.values().removeIf(service -> service.instances.isEmpty());
+    }
+
+    static String instanceKey(ServiceInstance instance) {
+        // instanceId 在部分注册中心实现里可能为空，退化为 host:port
+        return StringUtils.defaultIfBlank(instance.getInstanceId(), instance.getHost() + ":" + instance.getPort());
+    }
+
+    private static final class ServiceStats {
+
+        private final String serviceId;
+
+        private final Map<String, Stats> instances = new ConcurrentHashMap<>();
+
+        private ServiceStats(String serviceId) {
+            this.serviceId = serviceId;
+        }
+    }
+
+    /**
+     * 单个实例的统计
+     */
+    public static final class Stats {
+
+        private final ServiceStats service;
+
+        private final String key;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private volatile double ewmaNanos;
+
+        private volatile long samples;
+
+        private volatile int consecutiveErrors;
+
+        private volatile long lastSample;
+
+        private volatile long lastUsed = System.nanoTime();
+
+        // 摘除截止时间，0 表示未摘除
+        private volatile long ejectedUntil;
+
+        private Stats(ServiceStats service, String key) {
+            this.service = service;
+            this.key = key;
+        }
+
+        /**
+         * 峰值敏感的 EWMA：样本高于当前值时直接取样本，否则按距上次样本的时间衰减
+         * 摘除到期后的首个样本先清空统计
+         */
+        private synchronized void observe(long latencyNanos, boolean failure, long now, long decayNanos) {
+            if (ejectedUntil != 0 && now - ejectedUntil >= 0) {
+                // 摘除到期，之前的统计不再代表实例当前状态
+                ejectedUntil = 0;
+                samples = 0;
+                consecutiveErrors = 0;
+            }
+            if (samples == 0 || latencyNanos > ewmaNanos) {
+                ewmaNanos = latencyNanos;
+            } else {
+                double weight = Math.exp(-(double) (now - lastSample) / decayNanos);
+                ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+            }
+            lastSample = now;
+            samples++;
+            consecutiveErrors = failure ? consecutiveErrors + 1 : 0;
+        }
+
+        private double decayedEwma(long now, long decayNanos) {
+            return ewmaNanos * Math.exp(-(double) (now - lastSample) / decayNanos);
+        }
+
+        private boolean hasSamples(long now) {
+            return samples > 0 && (ejectedUntil == 0 || now - ejectedUntil < 0);
+        }
+
+        private boolean isEjected(long now) {
+            long until = ejectedUntil;
+            return until != 0 && now - until < 0;
+        }
+    }
+}
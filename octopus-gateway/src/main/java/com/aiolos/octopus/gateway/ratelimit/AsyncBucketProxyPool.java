@@ -0,0 +1,38 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.util.RendezvousRing;
+import io.github.bucket4j.distributed.proxy.AsyncProxyManager;
+import io.lettuce.core.api.StatefulConnection;
+
+import java.util.List;
+
+/**
+ * Bucket4j 异步代理连接池
+ * 每条 Lettuce 连接对应一个异步 ProxyManager，按桶键哈希固定到其中一条连接，
+ * 秒杀突发时的 CAS 往返分散到多条连接上，且全程不阻塞事件循环线程
+ */
+public class AsyncBucketProxyPool implements AutoCloseable {
+
+    private final List<AsyncProxyManager<byte[]>> proxyManagers;
+
+    private final List<StatefulConnection<byte[], byte[]>> connections;
+
+    public AsyncBucketProxyPool(List<AsyncProxyManager<byte[]>> proxyManagers,
+                                List<StatefulConnection<byte[], byte[]>> connections) {
+        this.proxyManagers = List.copyOf(proxyManagers);
+        this.connections = List.copyOf(connections);
+    }
+
+    /**
+     * 按桶键选择异步 ProxyManager
+     */
+    public AsyncProxyManager<byte[]> select(String bucketKey) {
+        int index = (int) ((RendezvousRing.hash(bucketKey) >>> 1) % proxyManagers.size());
+        return proxyManagers.get(index);
+    }
+
+    @Override
+    public void close() {
+        connections.forEach(StatefulConnection::close);
+    }
+}
@@ -0,0 +1,137 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import com.aiolos.octopus.gateway.util.IpCidr;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 客户端 IP 解析
+ * TCP 对端是可信代理时，从 X-Forwarded-For 由右向左逐个跳过可信代理，第一个非可信地址即客户端；
+ * 最左侧的地址由客户端自行填写、可以伪造，只有整条链都是可信代理时才会用到
+ * 对端不是可信代理时忽略转发头，直接使用对端地址
+ * 需要关闭 server.forward-headers-strategy，否则框架会先用最左侧地址改写 remoteAddress
+ */
+@Slf4j
+@Component
+public class ClientIpResolver implements RateLimitKeyResolver {
+
+    private static final String PREFIX = "ip:";
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    private volatile IpCidr[] trustedProxies = new IpCidr[0];
+
+    /**
+     * 启动时以及 Nacos 配置刷新后重建可信代理列表
+     */
+    @PostConstruct
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void rebuild() {
+        List<String> configured = rateLimitProperties.getClientIp().getTrustedProxies();
+        List<IpCidr> parsed = new ArrayList<>();
+        if (configured != null) {
+            for (String cidr : configured) {
+                if (StringUtils.isBlank(cidr)) {
+                    continue;
+                }
+                try {
+                    parsed.add(IpCidr.parse(cidr));
+                } catch (IllegalArgumentException e) {
+                    log.error("忽略非法的可信代理配置: {}", cidr);
+                }
+            }
+        }
+        this.trustedProxies = parsed.toArray(new IpCidr[0]);
+        if (parsed.isEmpty()) {
+            log.warn("未配置 rate-limit.client-ip.trusted-proxies, 忽略 {} 请求头; 网关部署在负载均衡之后时所有请求都会按负载均衡的地址限流",
+                    rateLimitProperties.getClientIp().getForwardedHeader());
+        } else {
+            log.info("可信代理已加载: {}", configured);
+        }
+    }
+
+    @Override
+    public String resolve(ServerWebExchange exchange) {
+        InetAddress address = resolveAddress(exchange);
+        return address != null ? PREFIX + address.getHostAddress() : null;
+    }
+
+    /**
+     * 解析客户端地址，结果缓存在请求上下文中，同一请求只解析一次转发头
+     *
+     * @return 无法获取对端地址时返回 null
+     */
+    public InetAddress resolveAddress(ServerWebExchange exchange) {
+        GatewayRequestContext context = GatewayRequestContext.get(exchange);
+        InetAddress address = context.getClientAddress();
+        if (address == null) {
+            address = resolveAddress(exchange.getRequest());
+            context.setClientAddress(address);
+        }
+        return address;
+    }
+
+    private InetAddress resolveAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return null;
+        }
+        InetAddress client = remoteAddress.getAddress();
+        IpCidr[] proxies = this.trustedProxies;
+        if (proxies.length == 0 || !isTrusted(proxies, client)) {
+            return client;
+        }
+        List<String> values = request.getHeaders().get(rateLimitProperties.getClientIp().getForwardedHeader());
+        if (values == null) {
+            return client;
+        }
+        // 多个同名请求头按出现顺序拼接，整体由右向左扫描，不拆分数组
+        for (int v = values.size() - 1; v >= 0; v--) {
+            String value = values.get(v);
+            int end = value.length();
+            while (end > 0) {
+                int comma = value.lastIndexOf(',', end - 1);
+                String entry = value.substring(comma + 1, end);
+                end = Math.max(comma, 0);
+                if (StringUtils.isBlank(entry)) {
+                    continue;
+                }
+                InetAddress hop = IpCidr.parseAddress(entry);
+                if (hop == null) {
+                    // 可信代理不会写入非法地址，停在最后一个可信的跳点
+                    return client;
+                }
+                client = hop;
+                if (!isTrusted(proxies, hop)) {
+                    return client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private boolean isTrusted(IpCidr[] proxies, InetAddress address) {
+        byte[] bytes = address.getAddress();
+        for (IpCidr proxy : proxies) {
+            if (proxy.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,50 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * 按设备ID解析限流标识，依次读取 X-Device-ID、device-id 请求头与 device-id cookie
+ * 设备ID由客户端上报，攻击者可以每次更换，单独使用时只能限制正常客户端
+ * 超长或包含字母、数字、下划线、中划线以外字符的设备ID视为无法解析，由组合解析器继续使用下一个标识
+ */
+@Component
+public class DeviceKeyResolver implements RateLimitKeyResolver {
+
+    private static final String PREFIX = "device:";
+
+    private static final int MAX_LENGTH = 64;
+
+    @Override
+    public String resolve(ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        HttpHeaders headers = request.getHeaders();
+        String deviceId = headers.getFirst("X-Device-ID");
+        if (StringUtils.isBlank(deviceId)) {
+            deviceId = headers.getFirst("device-id");
+        }
+        if (StringUtils.isBlank(deviceId)) {
+            HttpCookie cookie = request.getCookies().getFirst("device-id");
+            deviceId = cookie != null ? cookie.getValue() : null;
+        }
+        // 限制长度，防止超长设备ID撑大 Redis 键；只接受字母、数字、下划线和中划线，花括号、空白等字符会改变 Redis 集群的 hash tag
+        if (StringUtils.isBlank(deviceId) || deviceId.length() > MAX_LENGTH || !isSafe(deviceId)) {
+            return null;
+        }
+        return PREFIX + deviceId;
+    }
+
+    private static boolean isSafe(String deviceId) {
+        for (int i = 0; i < deviceId.length(); i++) {
+            char c = deviceId.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 热点限流键与路由查询端点，需要在 management.endpoints.web.exposure.include 中加入 heavyhitters
+ * GET /actuator/heavyhitters?limit=20
+ */
+@Component
+@Endpoint(id = "heavyhitters")
+public class HeavyHitterEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    @Resource
+    private HeavyHitterTracker heavyHitterTracker;
+
+    @ReadOperation
+    public Map<String, List<HeavyHitterSketch.Entry>> heavyHitters(@Nullable Integer limit) {
+        int size = limit != null && limit > 0 ? limit : DEFAULT_LIMIT;
+        Map<String, List<HeavyHitterSketch.Entry>> result = new LinkedHashMap<>();
+        result.put("clients", heavyHitterTracker.topClients(size));
+        result.put("routes", heavyHitterTracker.topRoutes(size));
+        return result;
+    }
+}
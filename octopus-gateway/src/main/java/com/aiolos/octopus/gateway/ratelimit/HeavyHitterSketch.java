@@ -0,0 +1,174 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.util.RendezvousRing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点键统计
+ * Count-Min Sketch 估算每个键的访问次数（只会高估，不会低估），另外只为估算值最高的 capacity 个键保存明细
+ * 候选键另有精确计数，从成为候选键时开始累计（只会低估，不会因哈希冲突高估），用于自动封禁等需要确认的场景
+ * 计数器使用 LongAdder，热点键与热点路由的并发请求分散到不同的 cell，不再争抢同一个 CAS 位置
+ * 内存固定为 depth * width 个计数器加 capacity 个候选条目，与键的总数无关
+ * {@link #decay()} 把所有计数减半，使统计结果偏向最近的流量
+ */
+public final class HeavyHitterSketch {
+
+    private final int depth;
+
+    private final int width;
+
+    private final int capacity;
+
+    private final LongAdder[] counters;
+
+    private final Map<String, Candidate> candidates = new ConcurrentHashMap<>();
+
+    // 候选集合已满时新键需要超过的估算值，只在候选集合变化时重新计算
+    private volatile long admissionThreshold;
+
+    public HeavyHitterSketch(int depth, int width, int capacity) {
+        if (depth <= 0 || width <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("depth、width、capacity 必须大于 0");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.capacity = capacity;
+        this.counters = new LongAdder[depth * width];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @return 该键成为候选键以来的精确次数，不是候选键时为 0
+     */
+    public long record(String key) {
+        long hash = RendezvousRing.hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = ((h1 + row * h2) & Integer.MAX_VALUE) % width;
+            LongAdder counter = counters[row * width + column];
+            counter.increment();
+            estimate = Math.min(estimate, counter.sum());
+        }
+        Candidate candidate = candidates.get(key);
+        if (candidate == null) {
+            if (estimate <= admissionThreshold) {
+                return 0;
+            }
+            candidate = offer(key, estimate);
+            if (candidate == null) {
+                return 0;
+            }
+        } else if (estimate > candidate.estimate) {
+            candidate.estimate = estimate;
+        }
+        candidate.count.increment();
+        return candidate.count.sum();
+    }
+
+    /**
+     * 估算值最高的若干个键，按估算值降序
+     */
+    public List<Entry> top(int limit) {
+        List<Entry> entries = new ArrayList<>(candidates.size());
+        candidates.forEach((key, candidate) -> entries.add(new Entry(key, candidate.estimate, candidate.count.sum())));
+        entries.sort(Comparator.comparingLong(Entry::estimate).reversed());
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    /**
+     * 所有计数减半，估算值减到 0 的候选键移出
+     * 减半期间并发记录的访问不会丢失，只是可能未被减半
+     */
+    public synchronized void decay() {
+        for (LongAdder counter : counters) {
+            halve(counter);
+        }
+        for (Candidate candidate : candidates.values()) {
+            candidate.estimate >>>= 1;
+            halve(candidate.count);
+        }
+        candidates.values().removeIf(candidate -> candidate.estimate == 0);
+        admissionThreshold = candidates.size() < capacity ? 0 : minEstimate();
+    }
+
+    /**
+     * 尝试把新键加入候选集合
+     *
+     * @return 加入后的候选条目，估算值不足以替换已有候选键时为 null
+     */
+    private Candidate offer(String key, long estimate) {
+        if (candidates.size() < capacity) {
+            return candidates.computeIfAbsent(key, k -> new Candidate(estimate));
+        }
+        synchronized (this) {
+            Candidate existing = candidates.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (candidates.size() >= capacity) {
+                // 淘汰估算值最小的候选键，新键估算值不高于它时不入选
+                String weakest = null;
+                long weakestEstimate = Long.MAX_VALUE;
+                for (Map.Entry<String, Candidate> entry : candidates.entrySet()) {
+                    if (entry.getValue().estimate < weakestEstimate) {
+                        weakest = entry.getKey();
+                        weakestEstimate = entry.getValue().estimate;
+                    }
+                }
+                if (weakest == null || estimate <= weakestEstimate) {
+                    admissionThreshold = weakestEstimate;
+                    return null;
+                }
+                candidates.remove(weakest);
+            }
+            Candidate candidate = new Candidate(estimate);
+            candidates.put(key, candidate);
+            admissionThreshold = candidates.size() < capacity ? 0 : minEstimate();
+            return candidate;
+        }
+    }
+
+    private long minEstimate() {
+        long min = Long.MAX_VALUE;
+        for (Candidate candidate : candidates.values()) {
+            min = Math.min(min, candidate.estimate);
+        }
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    private static void halve(LongAdder counter) {
+        counter.add(-(counter.sum() >>> 1));
+    }
+
+    private static final class Candidate {
+
+        private final LongAdder count = new LongAdder();
+
+        // 只用于排序与淘汰，并发更新时丢失少量增量不影响结果
+        private volatile long estimate;
+
+        private Candidate(long estimate) {
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * @param key      统计的键
+     * @param estimate 估算次数，可能因哈希冲突偏高
+     * @param count    成为候选键以来的精确次数，可能因入选较晚偏低
+     */
+    public record Entry(String key, long estimate, long count) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.cache.LocalBanCache;
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流热点统计
+ * 由 RateLimitFilter 在进程内记录每个请求的限流键（服务 + 路由模板 + 客户端）与路由（服务 + 路由模板），
+ * 不在 Redis 中保存按客户端的计数；热点通过 actuator 端点 heavyhitters 与 gateway.rate-limit.heavy-hitter.* 指标暴露
+ * 开启 autoBan 时，精确计数超过阈值的候选限流键写入本地封禁缓存，封禁只在本实例生效；
+ * 不使用 Count-Min Sketch 的估算值判定，哈希冲突导致的高估不会封禁无辜客户端
+ */
+@Slf4j
+@Component
+public class HeavyHitterTracker {
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    @Resource
+    private LocalBanCache localBanCache;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private HeavyHitterSketch clients;
+
+    private HeavyHitterSketch routes;
+
+    private Counter autoBanCounter;
+
+    private Disposable decayer;
+
+    @PostConstruct
+    public void start() {
+        GatewayRateLimitProperties.HeavyHitter config = rateLimitProperties.getHeavyHitter();
+        clients = new HeavyHitterSketch(config.getDepth(), config.getWidth(), config.getCapacity());
+        routes = new HeavyHitterSketch(config.getDepth(), config.getWidth(), config.getCapacity());
+        Gauge.builder("gateway.rate-limit.heavy-hitter.max", clients, HeavyHitterTracker::topEstimate)
+                .tag("dimension", "client")
+                .description("当前最热限流键的估算请求数")
+                .register(meterRegistry);
+        Gauge.builder("gateway.rate-limit.heavy-hitter.max", routes, HeavyHitterTracker::topEstimate)
+                .tag("dimension", "route")
+                .description("当前最热路由的估算请求数")
+                .register(meterRegistry);
+        autoBanCounter = Counter.builder("gateway.rate-limit.heavy-hitter.auto-ban")
+                .description("热点限流键自动封禁次数")
+                .register(meterRegistry);
+        decayer = Flux.interval(Duration.ofSeconds(Math.max(1, config.getDecaySeconds())))
+                .onBackpressureDrop()
+                .subscribe(tick -> {
+                    clients.decay();
+                    routes.decay();
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (decayer != null) {
+            decayer.dispose();
+        }
+    }
+
+    /**
+     * 记录一次请求
+     *
+     * @param route 服务 + 路由模板，即限流规则的键前缀
+     * @param key   完整的限流键
+     */
+    public void record(String route, String key) {
+        GatewayRateLimitProperties.HeavyHitter config = rateLimitProperties.getHeavyHitter();
+        if (!config.isEnabled()) {
+            return;
+        }
+        routes.record(route);
+        long count = clients.record(key);
+        if (config.isAutoBan() && count >= config.getAutoBanThreshold() && !localBanCache.isBanned(key)) {
+            log.warn("热点限流键自动封禁: {}, count={}", key, count);
+            localBanCache.ban(key, TimeUnit.SECONDS.toMillis(config.getAutoBanSeconds()));
+            autoBanCounter.increment();
+        }
+    }
+
+    public List<HeavyHitterSketch.Entry> topClients(int limit) {
+        return clients.top(limit);
+    }
+
+    public List<HeavyHitterSketch.Entry> topRoutes(int limit) {
+        return routes.top(limit);
+    }
+
+    private static double topEstimate(HeavyHitterSketch sketch) {
+        List<HeavyHitterSketch.Entry> top = sketch.top(1);
+        return top.isEmpty() ? 0 : top.get(0).estimate();
+    }
+}
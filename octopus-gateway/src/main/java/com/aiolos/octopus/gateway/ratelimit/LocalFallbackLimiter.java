@@ -0,0 +1,93 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.discovery.ServiceInstancesChangedEvent;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地近似限流
+ * Redis 限流熔断期间使用，按规则的最大请求数除以注册中心中的网关实例数在本实例内做固定窗口计数
+ * 各实例流量均衡时总放行量与 Redis 限流接近，不保证精确
+ */
+@Slf4j
+@Component
+public class LocalFallbackLimiter {
+
+    @Value("${spring.application.name}")
+    private String gatewayServiceId;
+
+    @Resource
+    private DiscoveryClient discoveryClient;
+
+    private volatile int instanceCount = 1;
+
+    private final Map<String, Window> windows = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .<String, Window>build()
+            .asMap();
+
+    @PostConstruct
+    public void init() {
+        refreshInstanceCount();
+    }
+
+    @EventListener
+    public void onInstancesChanged(ServiceInstancesChangedEvent event) {
+        if (event.isAllServices() || gatewayServiceId.equals(event.getServiceId())) {
+            refreshInstanceCount();
+        }
+    }
+
+    /**
+     * 本地计数并判断是否放行
+     *
+     * @param key         限流键
+     * @param maxRequests 规则的全局最大请求数
+     * @param timeWindow  窗口秒数
+     */
+    public boolean tryAcquire(String key, int maxRequests, int timeWindow) {
+        long limit = Math.max(1, maxRequests / instanceCount);
+        long windowMillis = TimeUnit.SECONDS.toMillis(timeWindow);
+        long windowStart = System.currentTimeMillis() / windowMillis * windowMillis;
+        Window window = windows.compute(key, (k, current) ->
+                current == null || current.start != windowStart ? new Window(windowStart) : current);
+        return window.count.incrementAndGet() <= limit;
+    }
+
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    private void refreshInstanceCount() {
+        try {
+            List<ServiceInstance> instances = discoveryClient.getInstances(gatewayServiceId);
+            instanceCount = Math.max(1, instances == null ? 0 : instances.size());
+        } catch (Exception e) {
+            log.error("获取网关实例数失败, 沿用当前值: {}", instanceCount, e);
+        }
+    }
+
+    private static final class Window {
+
+        private final long start;
+
+        private final AtomicLong count = new AtomicLong();
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+
+/**
+ * 本地许可租约
+ * 一次从 Redis 全局计数器或令牌桶批量租借许可，之后在本地无锁扣减，租约耗尽或到期才再次访问 Redis
+ * 同一时刻只有一个续租请求在途，并发的请求共享续租结果；共享的许可被其他请求抢完时再次续租，Redis 返回 0 个许可或续租轮数用完才拒绝
+ * 精度代价：每个网关实例最多持有一个租约的未用许可，全局最多少放行 (实例数 - 1) * 租约大小 个请求，不会多放行
+ */
+public final class PermitLease {
+
+    private final AtomicLong permits = new AtomicLong();
+
+    private volatile long expireAtMillis;
+
+    /**
+     * 许可被并发请求抢完后最多再续租的轮数，防止 Redis 持续少量授予时请求无限等待
+     */
+    private static final int MAX_RENEW_ROUNDS = 32;
+
+    private final AtomicReference<Renewal> pendingRenewal = new AtomicReference<>();
+
+    /**
+     * 从本地租约扣减一个许可，不访问 Redis
+     */
+    public boolean tryAcquire() {
+        if (expireAtMillis <= System.currentTimeMillis()) {
+            return false;
+        }
+        long current;
+        do {
+            current = permits.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!permits.compareAndSet(current, current - 1));
+        return true;
+    }
+
+    /**
+     * 扣减一个许可，本地不足时续租后再扣减
+     * 续租得到的许可少于等待的请求数时，未抢到的请求继续发起下一轮续租，最多 {@value #MAX_RENEW_ROUNDS} 轮
+     *
+     * @param renewer 续租函数，入参为已过期租约中未使用、可归还的许可数
+     * @return 是否获得许可，续租返回 0 个许可或超过续租轮数时为 false
+     */
+    public Mono<Boolean> acquire(LongFunction<Mono<Grant>> renewer) {
+        if (tryAcquire()) {
+            return Mono.just(true);
+        }
+        return Mono.defer(() -> tryAcquire() ? Mono.just(true) : renewal(renewer)
+                        .flatMap(granted -> {
+                            if (tryAcquire()) {
+                                return Mono.just(true);
+                            }
+                            // 本轮许可已被其他请求用完，全局仍有余量时返回空，进入下一轮续租
+                            return granted > 0 ? Mono.<Boolean>empty() : Mono.just(false);
+                        }))
+                .repeatWhenEmpty(rounds -> rounds.take(MAX_RENEW_ROUNDS))
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * 取得在途的续租，没有时发起一次新的续租
+     */
+    private Mono<Long> renewal(LongFunction<Mono<Grant>> renewer) {
+        while (true) {
+            Renewal current = pendingRenewal.get();
+            if (current != null) {
+                return current.result;
+            }
+            Renewal created = new Renewal(renewer);
+            if (pendingRenewal.compareAndSet(null, created)) {
+                return created.result;
+            }
+        }
+    }
+
+    /**
+     * 取出已过期租约中未使用的许可
+     */
+    private long drainExpired() {
+        if (expireAtMillis > System.currentTimeMillis()) {
+            return 0;
+        }
+        return Math.max(permits.getAndSet(0), 0);
+    }
+
+    /**
+     * 租约未过期时叠加到剩余许可上，过期租约的剩余许可已在续租前取出归还
+     */
+    private void apply(Grant grant) {
+        permits.addAndGet(grant.permits());
+        expireAtMillis = System.currentTimeMillis() + grant.ttlMillis();
+    }
+
+    /**
+     * 一次在途的续租，所有等待的请求共享结果
+     * 结果下发给订阅者之前先清空 pendingRenewal，未抢到许可的请求重试时发起新的续租，而不是重放这次已完成的结果
+     */
+    private final class Renewal {
+
+        private final Mono<Long> result;
+
+        private Renewal(LongFunction<Mono<Grant>> renewer) {
+            this.result = Mono.defer(() -> renewer.apply(drainExpired()))
+                    .doOnNext(PermitLease.this::apply)
+                    .map(Grant::permits)
+                    .defaultIfEmpty(0L)
+                    .doOnSuccess(granted -> pendingRenewal.compareAndSet(this, null))
+                    .doOnError(e -> pendingRenewal.compareAndSet(this, null))
+                    .cache();
+        }
+    }
+
+    /**
+     * 续租结果
+     *
+     * @param permits   租到的许可数，0 表示全局已耗尽
+     * @param ttlMillis 租约有效期
+     */
+    public record Grant(long permits, long ttlMillis) {
+    }
+}
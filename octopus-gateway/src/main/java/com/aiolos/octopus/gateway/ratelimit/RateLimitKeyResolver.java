@@ -0,0 +1,16 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * 限流键的客户端标识解析器
+ * 返回值带类型前缀（ip:、user:、device:），不同类型的标识不会落到同一个限流键
+ */
+@FunctionalInterface
+public interface RateLimitKeyResolver {
+
+    /**
+     * @return 无法解析时返回 null，由组合解析器继续尝试下一个
+     */
+    String resolve(ServerWebExchange exchange);
+}
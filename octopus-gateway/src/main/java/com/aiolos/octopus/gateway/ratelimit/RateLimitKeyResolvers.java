@@ -0,0 +1,60 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按配置组合限流标识解析器
+ * 多个类型按顺序取第一个能解析出的标识，末尾总是补充 IP，保证每个请求都有限流键
+ */
+@Component
+public class RateLimitKeyResolvers {
+
+    @Resource
+    private ClientIpResolver clientIpResolver;
+
+    @Resource
+    private UserKeyResolver userKeyResolver;
+
+    @Resource
+    private DeviceKeyResolver deviceKeyResolver;
+
+    /**
+     * 构建解析器，在规则索引重建时调用，请求时不再解析配置
+     */
+    public RateLimitKeyResolver of(List<GatewayRateLimitProperties.KeyType> types) {
+        Set<GatewayRateLimitProperties.KeyType> ordered = new LinkedHashSet<>();
+        if (types != null) {
+            for (GatewayRateLimitProperties.KeyType type : types) {
+                if (type != null) {
+                    ordered.add(type);
+                }
+            }
+        }
+        ordered.add(GatewayRateLimitProperties.KeyType.IP);
+        if (ordered.size() == 1) {
+            return clientIpResolver;
+        }
+        Map<GatewayRateLimitProperties.KeyType, RateLimitKeyResolver> byType = new EnumMap<>(GatewayRateLimitProperties.KeyType.class);
+        byType.put(GatewayRateLimitProperties.KeyType.IP, clientIpResolver);
+        byType.put(GatewayRateLimitProperties.KeyType.USER, userKeyResolver);
+        byType.put(GatewayRateLimitProperties.KeyType.DEVICE, deviceKeyResolver);
+        RateLimitKeyResolver[] chain = ordered.stream().map(byType::get).toArray(RateLimitKeyResolver[]::new);
+        return exchange -> {
+            for (RateLimitKeyResolver resolver : chain) {
+                String key = resolver.resolve(exchange);
+                if (key != null) {
+                    return key;
+                }
+            }
+            return null;
+        };
+    }
+}
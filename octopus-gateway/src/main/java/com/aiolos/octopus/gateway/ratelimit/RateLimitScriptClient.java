@@ -0,0 +1,176 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 限流脚本批量执行客户端
+ * 使用独立的 Lettuce 连接（StringCodec，关闭自动刷出），并发请求的 EVALSHA 先写入连接缓冲区，
+ * 累计到 maxBatchSize 条或等待 flushWindowMicros 微秒后一次刷出，多条命令合并为一次网络写，每个请求的 Mono 各自完成
+ * 参数以字符串传递，不再经过 JSON 序列化；Redis 重启导致脚本缓存丢失时回退为 EVAL 并重新缓存脚本
+ * 同时支持单机（含哨兵）与集群部署，集群模式下命令按键所在槽路由到对应节点
+ */
+@Slf4j
+@Component
+public class RateLimitScriptClient {
+
+    @Resource
+    private LettuceConnectionFactory lettuceConnectionFactory;
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    private StatefulConnection<String, String> connection;
+
+    private RedisScriptingAsyncCommands<String, String> commands;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    @PostConstruct
+    public void connect() {
+        AbstractRedisClient nativeClient = lettuceConnectionFactory.getNativeClient();
+        if (nativeClient instanceof RedisClusterClient clusterClient) {
+            StatefulRedisClusterConnection<String, String> clusterConnection = clusterClient.connect(StringCodec.UTF8);
+            commands = clusterConnection.async();
+            connection = clusterConnection;
+        } else if (nativeClient instanceof RedisClient redisClient) {
+            StatefulRedisConnection<String, String> standaloneConnection = redisClient.connect(StringCodec.UTF8);
+            commands = standaloneConnection.async();
+            connection = standaloneConnection;
+        } else {
+            throw new IllegalStateException("限流脚本客户端不支持的 Redis 客户端类型: "
+                    + (nativeClient == null ? null : nativeClient.getClass().getName()));
+        }
+        connection.setAutoFlushCommands(false);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connection != null) {
+            connection.flushCommands();
+            connection.close();
+        }
+    }
+
+    /**
+     * 从类路径加载脚本并在本地计算 SHA1
+     */
+    public Script load(String location) {
+        try {
+            String source = new ClassPathResource(location).getContentAsString(StandardCharsets.UTF_8);
+            return new Script(source, commands.digest(source));
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载限流脚本失败: " + location, e);
+        }
+    }
+
+    /**
+     * 以限流键为 hash tag 生成脚本使用的派生键，集群模式下同一限流键的派生键落在同一槽位
+     * 限流键中的花括号替换为尖括号，避免提前闭合 hash tag 使派生键分散到不同槽位
+     *
+     * @param key      限流键
+     * @param suffixes 派生键后缀，顺序与脚本中 KEYS 的下标一致
+     */
+    public static List<String> hashTagged(String key, String... suffixes) {
+        String tag = "{" + key.replace('{', '<').replace('}', '>') + "}:";
+        String[] keys = new String[suffixes.length];
+        for (int i = 0; i < suffixes.length; i++) {
+            keys[i] = tag + suffixes[i];
+        }
+        return List.of(keys);
+    }
+
+    /**
+     * 执行返回整数的脚本，集群模式下各键需使用相同的 hash tag
+     */
+    public Mono<Long> evalInteger(Script script, List<String> keys, Object... args) {
+        return eval(script, ScriptOutputType.INTEGER, keys.toArray(new String[0]), args);
+    }
+
+    /**
+     * 执行返回数组的脚本，集群模式下各键需使用相同的 hash tag
+     */
+    public Mono<List<Object>> evalMulti(Script script, List<String> keys, Object... args) {
+        return eval(script, ScriptOutputType.MULTI, keys.toArray(new String[0]), args);
+    }
+
+    private <T> Mono<T> eval(Script script, ScriptOutputType type, String[] keys, Object... args) {
+        String[] values = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = String.valueOf(args[i]);
+        }
+        return dispatch(c -> c.<T>evalsha(script.sha(), type, keys, values))
+                .onErrorResume(RedisNoScriptException.class,
+                        e -> dispatch(c -> c.<T>eval(script.source(), type, keys, values)));
+    }
+
+    private <T> Mono<T> dispatch(Function<RedisScriptingAsyncCommands<String, String>, RedisFuture<T>> command) {
+        return Mono.defer(() -> {
+            RedisFuture<T> future = command.apply(commands);
+            onDispatched();
+            return Mono.fromCompletionStage(future);
+        });
+    }
+
+    /**
+     * 达到批大小立即刷出，否则确保在刷出窗口结束时刷出一次
+     */
+    private void onDispatched() {
+        GatewayRateLimitProperties.Batch config = rateLimitProperties.getBatch();
+        if (!config.isEnabled() || pending.incrementAndGet() >= config.getMaxBatchSize()) {
+            flush();
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            Schedulers.parallel().schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, config.getFlushWindowMicros(), TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private void flush() {
+        if (pending.getAndSet(0) > 0 || !rateLimitProperties.getBatch().isEnabled()) {
+            connection.flushCommands();
+        }
+    }
+
+    /**
+     * 预加载的脚本
+     *
+     * @param source 脚本内容，EVALSHA 返回 NOSCRIPT 时使用
+     * @param sha    脚本 SHA1
+     */
+    public record Script(String source, String sha) {
+    }
+}
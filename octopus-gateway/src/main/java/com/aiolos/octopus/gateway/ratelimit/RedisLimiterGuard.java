@@ -0,0 +1,61 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Redis 限流调用熔断器
+ * 每次调用带短超时，按失败率和慢调用比例熔断；熔断期间调用立即失败，由调用方切换到本地限流，
+ * 熔断时间结束后放行少量探测调用，探测成功即恢复
+ */
+@Slf4j
+@Component
+public class RedisLimiterGuard {
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Duration timeout;
+
+    public RedisLimiterGuard(GatewayRateLimitProperties rateLimitProperties) {
+        GatewayRateLimitProperties.CircuitBreaker config = rateLimitProperties.getCircuitBreaker();
+        this.timeout = Duration.ofMillis(config.getTimeoutMillis());
+        this.circuitBreaker = CircuitBreaker.of("redis-rate-limit", CircuitBreakerConfig.custom()
+                .failureRateThreshold(config.getFailureRateThreshold())
+                .slowCallDurationThreshold(Duration.ofMillis(config.getSlowCallDurationMillis()))
+                .slowCallRateThreshold(config.getSlowCallRateThreshold())
+                .slidingWindowSize(config.getSlidingWindowSize())
+                .minimumNumberOfCalls(config.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(Duration.ofMillis(config.getWaitInOpenStateMillis()))
+                .permittedNumberOfCallsInHalfOpenState(config.getPermittedCallsInHalfOpenState())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .build());
+        this.circuitBreaker.getEventPublisher()
+                .onStateTransition(event -> log.warn("Redis 限流熔断器状态变更: {}", event.getStateTransition()));
+    }
+
+    /**
+     * 以超时和熔断器包装 Redis 调用
+     */
+    public <T> Mono<T> protect(Mono<T> call) {
+        return call.timeout(timeout).transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+    }
+
+    /**
+     * 调用是否因熔断器打开被直接拒绝，未访问 Redis
+     */
+    public static boolean isShortCircuited(Throwable e) {
+        return e instanceof CallNotPermittedException;
+    }
+
+    public CircuitBreaker.State state() {
+        return circuitBreaker.getState();
+    }
+}
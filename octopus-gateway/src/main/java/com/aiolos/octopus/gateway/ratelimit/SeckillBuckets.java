@@ -0,0 +1,74 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.AsyncBucketProxy;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 秒杀令牌桶
+ * 统一令牌桶键与配置的生成方式，供限流过滤器和排队放行共用
+ */
+@Component
+public class SeckillBuckets {
+
+    @Resource
+    private AsyncBucketProxyPool asyncBucketProxyPool;
+
+    /**
+     * 获取异步令牌桶，构建过程不访问 Redis
+     */
+    public AsyncBucketProxy bucket(String bucketKey, BucketConfiguration bucketConfig) {
+        return asyncBucketProxyPool.select(bucketKey).builder()
+                .build(bucketKey.getBytes(StandardCharsets.UTF_8), () -> CompletableFuture.completedFuture(bucketConfig));
+    }
+
+    /**
+     * 未配置活动的秒杀路径使用的单个令牌桶键
+     */
+    public static String pathBucketKey(String path) {
+        return "seckill:bucket:" + path;
+    }
+
+    /**
+     * 分片键，hash tag 包含分片号，使各分片落到不同的集群槽位
+     */
+    public static String shardBucketKey(GatewayRateLimitProperties.Activity activity, int shard) {
+        return "seckill:{" + activity.getId() + ":" + shard + "}:bucket";
+    }
+
+    public static int shards(GatewayRateLimitProperties.Activity activity) {
+        return Math.max(1, activity.getShards());
+    }
+
+    /**
+     * 单个分片的令牌桶配置：容量均分，补充周期放大为分片数秒，总补充速率保持不变
+     */
+    public static BucketConfiguration shardConfig(GatewayRateLimitProperties.Activity activity,
+                                                  GatewayRateLimitProperties.Seckill config) {
+        int shards = shards(activity);
+        int replenishRate = activity.getReplenishRate() != null ? activity.getReplenishRate() : config.getReplenishRate();
+        int burstCapacity = activity.getBurstCapacity() != null ? activity.getBurstCapacity() : config.getBurstCapacity();
+        return BucketConfiguration.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(Math.max(1, burstCapacity / shards))
+                        .refillGreedy(replenishRate, Duration.ofSeconds(shards))
+                        .build())
+                .build();
+    }
+
+    public static BucketConfiguration pathConfig(GatewayRateLimitProperties.Seckill config) {
+        return BucketConfiguration.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(config.getBurstCapacity())
+                        .refillGreedy(config.getReplenishRate(), Duration.ofSeconds(1))
+                        .build())
+                .build();
+    }
+}
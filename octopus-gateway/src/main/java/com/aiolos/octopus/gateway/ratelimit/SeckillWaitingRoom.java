@@ -0,0 +1,271 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import com.aiolos.octopus.gateway.config.SeckillActivityIndex;
+import com.aiolos.octopus.gateway.config.SigningKeys;
+import com.aiolos.octopus.gateway.util.HmacKeyRing;
+import com.aiolos.octopus.gateway.util.QueueTicketUtil;
+import io.github.bucket4j.distributed.AsyncBucketProxy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 秒杀排队
+ * 令牌不足的请求领取签名排队票据，序号写入 Redis 有序集合；后台按调度间隔从令牌桶取令牌推进队头，先进先出放行
+ * 客户端轮询排队状态时只读本地内存中的队头序号，放行后携带票据重试原请求，票据在 Redis 中删除后即失效，只能使用一次
+ * 队列中有人等待时新到的请求一律排队，令牌只由后台放行与票据兑现消耗，不允许插队
+ */
+@Slf4j
+@Component
+public class SeckillWaitingRoom {
+
+    /**
+     * 排队票据请求头/响应头
+     */
+    public static final String TICKET_HEADER = "X-Seckill-Ticket";
+
+    /**
+     * 前方排队人数响应头
+     */
+    public static final String POSITION_HEADER = "X-Seckill-Position";
+
+    /**
+     * 票据已轮到，可以放行
+     */
+    public static final long CLAIMED = 1;
+
+    @Resource
+    private GatewayRateLimitProperties rateLimitProperties;
+
+    @Resource
+    private RateLimitScriptClient rateLimitScriptClient;
+
+    @Resource
+    private SeckillBuckets seckillBuckets;
+
+    @Resource
+    private SigningKeys signingKeys;
+
+    @Resource
+    private SeckillActivityIndex seckillActivityIndex;
+
+    private RateLimitScriptClient.Script enqueueScript;
+
+    private RateLimitScriptClient.Script advanceScript;
+
+    private RateLimitScriptClient.Script claimScript;
+
+    private final Map<String, QueueState> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong ticks = new AtomicLong();
+
+    private Disposable admitter;
+
+    @PostConstruct
+    public void start() {
+        enqueueScript = rateLimitScriptClient.load("lua/waiting_room_enqueue.lua");
+        advanceScript = rateLimitScriptClient.load("lua/waiting_room_advance.lua");
+        claimScript = rateLimitScriptClient.load("lua/waiting_room_claim.lua");
+        admitter = Flux.interval(Duration.ofMillis(rateLimitProperties.getSeckill().getAdmitIntervalMillis()))
+                .onBackpressureDrop()
+                .concatMap(tick -> admitAll())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (admitter != null) {
+            admitter.dispose();
+        }
+    }
+
+    /**
+     * 队列中是否有人等待放行，只读本地内存
+     * 本地状态在每次调度和领取票据时刷新，其他网关实例的排队最多延迟一个调度间隔被观察到
+     */
+    public boolean hasWaiters(GatewayRateLimitProperties.Activity activity) {
+        QueueState state = states.get(activity.getId());
+        return state != null && state.tail > state.head;
+    }
+
+    /**
+     * 领取排队票据
+     *
+     * @return 本地观察到的排队人数已达上限或未配置票据签名密钥时为空
+     */
+    public Mono<Queued> enqueue(GatewayRateLimitProperties.Activity activity) {
+        QueueState state = state(activity.getId());
+        if (state.tail - state.head >= activity.getMaxQueueLength()) {
+            return Mono.empty();
+        }
+        HmacKeyRing keys = signingKeys.queueTicket();
+        if (keys == null) {
+            log.error("未配置 rate-limit.seckill.ticket-secrets, 无法发放排队票据, activityId={}", activity.getId());
+            return Mono.empty();
+        }
+        String id = activity.getId();
+        long expireAtMillis = System.currentTimeMillis() + activity.getTicketTtlSeconds() * 1000L;
+        return rateLimitScriptClient.evalMulti(enqueueScript, List.of(tailKey(id), queueKey(id), headKey(id)),
+                        activity.getTicketTtlSeconds(), expireAtMillis)
+                .timeout(Duration.ofMillis(rateLimitProperties.getSeckill().getTimeoutMillis()))
+                .map(result -> {
+                    long sequence = toLong(result.get(0));
+                    long head = toLong(result.get(1));
+                    state.update(head, sequence);
+                    return new Queued(QueueTicketUtil.sign(keys, id, sequence, expireAtMillis), Math.max(1, sequence - head));
+                });
+    }
+
+    /**
+     * 使用票据申请放行
+     * 未轮到时只读本地队头，不访问 Redis
+     *
+     * @return {@link #CLAIMED} 放行；小于 0 表示尚未轮到，绝对值为前方人数；票据无效或已使用时为空
+     */
+    public Mono<Long> claim(GatewayRateLimitProperties.Activity activity, String ticketValue) {
+        QueueTicketUtil.QueueTicket ticket = verify(ticketValue);
+        if (ticket == null || !ticket.activityId().equals(activity.getId())) {
+            return Mono.empty();
+        }
+        long head = state(activity.getId()).head;
+        if (ticket.sequence() > head) {
+            return Mono.just(head - ticket.sequence());
+        }
+        String id = activity.getId();
+        return rateLimitScriptClient.evalInteger(claimScript, List.of(queueKey(id), headKey(id)), ticket.sequence())
+                .timeout(Duration.ofMillis(rateLimitProperties.getSeckill().getTimeoutMillis()))
+                .filter(result -> result != 0);
+    }
+
+    /**
+     * 查询排队状态，只读本地内存
+     *
+     * @return 票据无效时为空
+     */
+    public Map<String, Object> status(String ticketValue) {
+        QueueTicketUtil.QueueTicket ticket = verify(ticketValue);
+        if (ticket == null) {
+            return null;
+        }
+        QueueState state = state(ticket.activityId());
+        long position = Math.max(0, ticket.sequence() - state.head);
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("activityId", ticket.activityId());
+        status.put("position", position);
+        status.put("admitted", position == 0);
+        status.put("retryAfterMillis", position == 0 ? 0 : rateLimitProperties.getSeckill().getAdmitIntervalMillis());
+        return status;
+    }
+
+    private Mono<Void> admitAll() {
+        List<GatewayRateLimitProperties.Activity> activities = seckillActivityIndex.activities();
+        if (activities.isEmpty()) {
+            return Mono.empty();
+        }
+        long tick = ticks.getAndIncrement();
+        return Flux.fromIterable(activities)
+                .filter(GatewayRateLimitProperties.Activity::isQueueEnabled)
+                .flatMap(activity -> admit(activity, tick))
+                .then();
+    }
+
+    /**
+     * 按队列中的等待人数从令牌桶取令牌并推进队头，多余的令牌归还令牌桶
+     * 每次调度轮换一个分片取令牌，各分片的补充速度都能用于放行
+     */
+    private Mono<Void> admit(GatewayRateLimitProperties.Activity activity, long tick) {
+        GatewayRateLimitProperties.Seckill config = rateLimitProperties.getSeckill();
+        String id = activity.getId();
+        QueueState state = state(id);
+        List<String> keys = List.of(headKey(id), tailKey(id), queueKey(id));
+        int ttl = activity.getTicketTtlSeconds();
+        return rateLimitScriptClient.evalMulti(advanceScript, keys, 0, ttl, System.currentTimeMillis())
+                .flatMap(result -> {
+                    state.update(toLong(result.get(1)), toLong(result.get(2)));
+                    long waiting = state.tail - state.head;
+                    if (waiting <= 0) {
+                        return Mono.<Void>empty();
+                    }
+                    int shard = (int) (tick % SeckillBuckets.shards(activity));
+                    AsyncBucketProxy bucket = seckillBuckets.bucket(SeckillBuckets.shardBucketKey(activity, shard),
+                            SeckillBuckets.shardConfig(activity, config));
+                    long wanted = Math.min(waiting, config.getMaxAdmitPerTick());
+                    return Mono.fromFuture(() -> bucket.tryConsumeAsMuchAsPossible(wanted))
+                            .filter(granted -> granted > 0)
+                            .flatMap(granted -> rateLimitScriptClient.evalMulti(advanceScript, keys, granted, ttl, System.currentTimeMillis())
+                                    .flatMap(advanced -> {
+                                        state.update(toLong(advanced.get(1)), toLong(advanced.get(2)));
+                                        long leftover = granted - toLong(advanced.get(0));
+                                        return leftover > 0 ? Mono.fromFuture(() -> bucket.addTokens(leftover)) : Mono.<Void>empty();
+                                    }));
+                })
+                .timeout(Duration.ofMillis(Math.max(config.getTimeoutMillis(), config.getAdmitIntervalMillis())))
+                .onErrorResume(e -> {
+                    log.warn("秒杀排队放行失败, activityId={}, error={}", id, e.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private QueueTicketUtil.QueueTicket verify(String ticketValue) {
+        HmacKeyRing keys = signingKeys.queueTicket();
+        return keys == null ? null : QueueTicketUtil.verify(keys, ticketValue);
+    }
+
+    private QueueState state(String activityId) {
+        return states.computeIfAbsent(activityId, key -> new QueueState());
+    }
+
+    private static long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    private static String headKey(String activityId) {
+        return "seckill:queue:{" + activityId + "}:head";
+    }
+
+    private static String tailKey(String activityId) {
+        return "seckill:queue:{" + activityId + "}:tail";
+    }
+
+    private static String queueKey(String activityId) {
+        return "seckill:queue:{" + activityId + "}";
+    }
+
+    /**
+     * 排队结果
+     *
+     * @param ticket   签名后的排队票据
+     * @param position 前方人数（含自己）
+     */
+    public record Queued(String ticket, long position) {
+    }
+
+    /**
+     * 本地观察到的队列状态，只会单调前进
+     */
+    private static final class QueueState {
+
+        private volatile long head;
+
+        private volatile long tail;
+
+        private synchronized void update(long head, long tail) {
+            this.head = Math.max(this.head, head);
+            this.tail = Math.max(this.tail, tail);
+        }
+    }
+}
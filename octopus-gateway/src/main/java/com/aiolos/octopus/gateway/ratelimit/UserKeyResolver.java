@@ -0,0 +1,49 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.cache.VerifiedTokenCache;
+import com.aiolos.octopus.gateway.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * 按登录用户解析限流标识
+ * 限流过滤器早于登录校验执行，不能信任客户端传入的用户请求头，这里直接校验 Bearer token：
+ * 先查已校验 token 缓存，未命中时本地验签并回填缓存，之后的登录校验直接命中缓存；验签失败不回退 RPC，返回 null
+ */
+@Component
+public class UserKeyResolver implements RateLimitKeyResolver {
+
+    private static final String PREFIX = "user:";
+
+    private static final String BEARER = "Bearer ";
+
+    @Resource
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Override
+    public String resolve(ServerWebExchange exchange) {
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || authHeader.length() <= BEARER.length() || !authHeader.startsWith(BEARER)) {
+            return null;
+        }
+        String token = authHeader.substring(BEARER.length());
+        VerifiedTokenCache.Entry cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            return cached.isValid() ? PREFIX + cached.getUserId() : null;
+        }
+        try {
+            Claims claims = JwtUtil.parseToken(token);
+            long userId = Long.parseLong(claims.getSubject());
+            if (claims.getExpiration() != null) {
+                verifiedTokenCache.putVerified(token, userId, claims.getExpiration().getTime());
+            }
+            return PREFIX + userId;
+        } catch (Exception e) {
+            // 过期、伪造等情况交给登录校验处理，这里只放弃按用户限流
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.aiolos.octopus.gateway.rpc;
+
+import com.aiolos.badger.identitycore.api.AccountTokenApi;
+import com.aiolos.badger.identitycore.dto.AccountDTO;
+import com.aiolos.octopus.gateway.cache.VerifiedTokenCache;
+import com.aiolos.octopus.gateway.config.GatewayIdentityProperties;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.DubboReference;
+import org.apache.dubbo.rpc.RpcContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 身份服务异步客户端
+ * 通过 Dubbo 异步调用把 RPC 结果转换为 Mono，避免在 Netty 事件循环线程上阻塞等待
+ * 每次调用带超时，并用在途数上限做舱壁隔离，失败时按配置的降级策略处理
+ */
+@Slf4j
+@Component
+public class AccountIdentityClient {
+
+    @DubboReference
+    private AccountTokenApi accountTokenApi;
+
+    @Resource
+    private GatewayIdentityProperties gatewayIdentityProperties;
+
+    @Resource
+    private VerifiedTokenCache verifiedTokenCache;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Map<String, Mono<Long>> pendingAnonymousIds = new ConcurrentHashMap<>();
+
+    /**
+     * 通过 token 查询用户ID
+     * RPC 正常返回的结果写入已校验 token 缓存，无效 token 做负缓存，降级结果不缓存
+     *
+     * @return 用户ID；token 无效或降级放行时为空
+     */
+    public Mono<Long> getUserIdByToken(String token) {
+        GatewayIdentityProperties.Rpc config = gatewayIdentityProperties.getRpc();
+        return call(config, () -> accountTokenApi.getUserByToken(token))
+                .mapNotNull(AccountDTO::getUserId)
+                .doOnNext(userId -> verifiedTokenCache.putRpcVerified(token, userId))
+                .switchIfEmpty(Mono.fromRunnable(() -> verifiedTokenCache.putInvalid(token)))
+                .onErrorResume(e -> degrade("getUserByToken", config, e));
+    }
+
+    /**
+     * 按设备ID获取或创建匿名用户ID
+     * 同一设备并发的首次请求合并为一次 RPC
+     *
+     * @return 匿名用户ID；降级放行时为空
+     */
+    public Mono<Long> getOrCreateAnonymousId(String deviceId) {
+        GatewayIdentityProperties.Rpc config = gatewayIdentityProperties.getRpc();
+        Mono<Long> shared = pendingAnonymousIds.computeIfAbsent(deviceId,
+                key -> call(config, () -> accountTokenApi.getOrCreateAnonymousId(key))
+                        .doFinally(signal -> pendingAnonymousIds.remove(key))
+                        .cache());
+        return shared.onErrorResume(e -> degrade("getOrCreateAnonymousId", config, e));
+    }
+
+    private <T> Mono<T> call(GatewayIdentityProperties.Rpc config, Callable<T> call) {
+        return Mono.defer(() -> {
+            if (inFlight.incrementAndGet() > config.getMaxInFlight()) {
+                inFlight.decrementAndGet();
+                return Mono.<T>error(new RejectedExecutionException("在途身份RPC已达上限: " + config.getMaxInFlight()));
+            }
+            // asyncCall 只负责发出请求并立即返回 Future，结果由 Dubbo 客户端线程回调
+            return Mono.fromFuture(RpcContext.getContext().asyncCall(call))
+                    .timeout(Duration.ofMillis(config.getTimeoutMillis()))
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+
+    private <T> Mono<T> degrade(String method, GatewayIdentityProperties.Rpc config, Throwable e) {
+        log.warn("身份RPC调用降级, method={}, policy={}, error={}", method, config.getDegradePolicy(), e.toString());
+        if (config.getDegradePolicy() == GatewayIdentityProperties.DegradePolicy.FAIL_CLOSED) {
+            return Mono.error(new IdentityUnavailableException("身份服务不可用: " + method, e));
+        }
+        return Mono.empty();
+    }
+}
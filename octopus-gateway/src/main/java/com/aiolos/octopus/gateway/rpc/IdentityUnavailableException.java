@@ -0,0 +1,12 @@
+package com.aiolos.octopus.gateway.rpc;
+
+/**
+ * 身份服务不可用
+ * 降级策略为 FAIL_CLOSED 时由 {@link AccountIdentityClient} 抛出
+ */
+public class IdentityUnavailableException extends RuntimeException {
+
+    public IdentityUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
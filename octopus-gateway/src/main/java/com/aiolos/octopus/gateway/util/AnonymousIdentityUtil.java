@@ -0,0 +1,72 @@
+package com.aiolos.octopus.gateway.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 匿名身份签名工具类
+ * 将 deviceId、匿名 userId 与过期时间用 HMAC-SHA256 签名后写入 cookie，网关后续请求本地验签即可，无需再调 RPC
+ * 格式：base64url(deviceId).anonymousId.expireAtMillis.base64url(signature)
+ * 签名密钥来自配置 identity.anonymous-cookie.secrets，与 JWT 使用不同的密钥，避免匿名身份被当作登录 token 使用
+ */
+public class AnonymousIdentityUtil {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 生成签名后的匿名身份
+     *
+     * @param keys           签名密钥
+     * @param deviceId       设备ID
+     * @param anonymousId    匿名 userId
+     * @param expireAtMillis 过期时间戳（毫秒）
+     */
+    public static String sign(HmacKeyRing keys, String deviceId, long anonymousId, long expireAtMillis) {
+        String payload = ENCODER.encodeToString(deviceId.getBytes(StandardCharsets.UTF_8))
+                + "." + anonymousId + "." + expireAtMillis;
+        return payload + "." + ENCODER.encodeToString(keys.sign(payload));
+    }
+
+    /**
+     * 校验签名并解析匿名身份，密钥环中任一密钥签名的都视为合法
+     *
+     * @return 签名不合法、格式错误或已过期时返回 null
+     */
+    public static AnonymousIdentity verify(HmacKeyRing keys, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        int signatureIndex = value.lastIndexOf('.');
+        if (signatureIndex <= 0) {
+            return null;
+        }
+        String payload = value.substring(0, signatureIndex);
+        try {
+            byte[] signature = DECODER.decode(value.substring(signatureIndex + 1));
+            if (!keys.verify(payload, signature)) {
+                return null;
+            }
+            String[] parts = StringUtils.split(payload, '.');
+            if (parts.length != 3) {
+                return null;
+            }
+            long expireAtMillis = Long.parseLong(parts[2]);
+            if (expireAtMillis <= System.currentTimeMillis()) {
+                return null;
+            }
+            String deviceId = new String(DECODER.decode(parts[0]), StandardCharsets.UTF_8);
+            return new AnonymousIdentity(deviceId, Long.parseLong(parts[1]), expireAtMillis);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 匿名身份
+     */
+    public record AnonymousIdentity(String deviceId, long anonymousId, long expireAtMillis) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.aiolos.octopus.gateway.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * HMAC-SHA256 签名密钥环
+ * 第一个密钥用于签名，全部密钥都可用于校验；轮换时把新密钥放在最前，旧密钥保留到已签发的内容过期后再移除
+ * 构建完成后只读，Mac 实例按线程缓存
+ */
+public final class HmacKeyRing {
+
+    /**
+     * 密钥最短字节数，与 HMAC-SHA256 输出长度一致
+     */
+    public static final int MIN_SECRET_BYTES = 32;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec[] keys;
+
+    private final ThreadLocal<Mac[]> macs;
+
+    private HmacKeyRing(SecretKeySpec[] keys) {
+        this.keys = keys;
+        this.macs = ThreadLocal.withInitial(() -> {
+            Mac[] created = new Mac[keys.length];
+            try {
+                for (int i = 0; i < keys.length; i++) {
+                    created[i] = Mac.getInstance(ALGORITHM);
+                    created[i].init(keys[i]);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * 构建密钥环
+     *
+     * @param secrets 密钥列表，第一个用于签名
+     * @throws IllegalArgumentException 密钥为空或长度不足
+     */
+    public static HmacKeyRing of(List<String> secrets) {
+        if (secrets == null || secrets.isEmpty()) {
+            throw new IllegalArgumentException("未配置签名密钥");
+        }
+        SecretKeySpec[] keys = new SecretKeySpec[secrets.size()];
+        for (int i = 0; i < keys.length; i++) {
+            byte[] secret = secrets.get(i) == null ? new byte[0] : secrets.get(i).getBytes(StandardCharsets.UTF_8);
+            if (secret.length < MIN_SECRET_BYTES) {
+                throw new IllegalArgumentException("签名密钥长度不能少于 " + MIN_SECRET_BYTES + " 字节, index=" + i);
+            }
+            keys[i] = new SecretKeySpec(secret, ALGORITHM);
+        }
+        return new HmacKeyRing(keys);
+    }
+
+    /**
+     * 使用当前密钥签名
+     */
+    public byte[] sign(String payload) {
+        return macs.get()[0].doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 依次使用各密钥校验签名
+     */
+    public boolean verify(String payload, byte[] signature) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        for (Mac mac : macs.get()) {
+            if (MessageDigest.isEqual(signature, mac.doFinal(bytes))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+}
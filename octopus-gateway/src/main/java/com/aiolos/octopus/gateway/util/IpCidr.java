@@ -0,0 +1,98 @@
+package com.aiolos.octopus.gateway.util;
+
+import com.google.common.net.InetAddresses;
+import org.apache.commons.lang3.StringUtils;
+
+import java.net.InetAddress;
+
+/**
+ * IP 网段
+ * 支持单个地址（1.2.3.4、::1）与 CIDR（10.0.0.0/8、fd00::/8），IPv4 与 IPv6 互不匹配
+ * 只解析字面量地址，不会触发 DNS 查询
+ */
+public final class IpCidr {
+
+    private final byte[] network;
+
+    private final int prefixLength;
+
+    private IpCidr(byte[] network, int prefixLength) {
+        this.network = network;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * 解析网段
+     *
+     * @throws IllegalArgumentException 格式不合法
+     */
+    public static IpCidr parse(String cidr) {
+        String value = StringUtils.trimToEmpty(cidr);
+        int slash = value.indexOf('/');
+        InetAddress address = InetAddresses.forString(slash < 0 ? value : value.substring(0, slash));
+        byte[] bytes = address.getAddress();
+        int maxLength = bytes.length * 8;
+        int prefixLength = slash < 0 ? maxLength : Integer.parseInt(value.substring(slash + 1));
+        if (prefixLength < 0 || prefixLength > maxLength) {
+            throw new IllegalArgumentException("非法的网段前缀长度: " + cidr);
+        }
+        return new IpCidr(bytes, prefixLength);
+    }
+
+    /**
+     * 解析字面量 IP 地址，兼容带端口（1.2.3.4:80、[::1]:80）的写法
+     *
+     * @return 不是合法 IP 时返回 null
+     */
+    public static InetAddress parseAddress(String value) {
+        String host = StringUtils.trimToEmpty(value);
+        if (host.isEmpty()) {
+            return null;
+        }
+        if (host.charAt(0) == '[') {
+            int end = host.indexOf(']');
+            host = end > 0 ? host.substring(1, end) : host;
+        } else {
+            int colon = host.indexOf(':');
+            if (colon > 0 && host.indexOf(':', colon + 1) < 0) {
+                // 只有一个冒号说明是 IPv4:port
+                host = host.substring(0, colon);
+            }
+        }
+        try {
+            return InetAddresses.forString(host);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public boolean contains(InetAddress address) {
+        return address != null && contains(address.getAddress());
+    }
+
+    public boolean contains(byte[] address) {
+        if (address.length != network.length) {
+            return false;
+        }
+        int fullBytes = prefixLength >>> 3;
+        for (int i = 0; i < fullBytes; i++) {
+            if (address[i] != network[i]) {
+                return false;
+            }
+        }
+        int remainingBits = prefixLength & 7;
+        if (remainingBits == 0) {
+            return true;
+        }
+        int mask = 0xFF << (8 - remainingBits);
+        return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+    }
+
+    public byte[] network() {
+        return network.clone();
+    }
+
+    public int prefixLength() {
+        return prefixLength;
+    }
+}
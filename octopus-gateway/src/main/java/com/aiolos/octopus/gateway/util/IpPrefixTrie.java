@@ -0,0 +1,141 @@
+package com.aiolos.octopus.gateway.util;
+
+import java.util.Arrays;
+
+/**
+ * IP 前缀树
+ * 按地址位构建的二叉前缀树，IPv4 与 IPv6 各一棵，节点保存在数组中而不是对象中：
+ * children[2n]、children[2n+1] 为节点 n 的 0、1 子节点下标（0 表示不存在），values[n] 为挂在该节点上的网段标记
+ * 查询按位下降，返回最长前缀匹配的标记，IPv4 最多 32 步、IPv6 最多 128 步，不产生任何对象
+ * 通过 {@link Builder} 构建，构建完成后只读，可在多线程间安全共享
+ */
+public final class IpPrefixTrie {
+
+    private static final IpPrefixTrie EMPTY = new Builder().build();
+
+    private final Tree v4;
+
+    private final Tree v6;
+
+    private final int size;
+
+    private IpPrefixTrie(Tree v4, Tree v6, int size) {
+        this.v4 = v4;
+        this.v6 = v6;
+        this.size = size;
+    }
+
+    public static IpPrefixTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 最长前缀匹配
+     *
+     * @param address {@link java.net.InetAddress#getAddress()} 返回的 4 或 16 字节地址
+     * @return 命中网段的标记，未命中返回 0
+     */
+    public byte match(byte[] address) {
+        if (address.length == 4) {
+            return v4.match(address);
+        }
+        if (address.length == 16) {
+            return v6.match(address);
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public static final class Builder {
+
+        private final Tree v4 = new Tree();
+
+        private final Tree v6 = new Tree();
+
+        private int size;
+
+        /**
+         * 插入网段，同一网段重复插入时后插入的标记覆盖之前的
+         *
+         * @param value 非 0 的网段标记
+         */
+        public Builder insert(IpCidr cidr, byte value) {
+            if (value == 0) {
+                throw new IllegalArgumentException("网段标记不能为 0");
+            }
+            byte[] network = cidr.network();
+            (network.length == 4 ? v4 : v6).insert(network, cidr.prefixLength(), value);
+            size++;
+            return this;
+        }
+
+        public IpPrefixTrie build() {
+            return new IpPrefixTrie(v4.trim(), v6.trim(), size);
+        }
+    }
+
+    private static final class Tree {
+
+        private int[] children = new int[64];
+
+        private byte[] values = new byte[32];
+
+        // 节点 0 为根节点
+        private int nodes = 1;
+
+        private void insert(byte[] network, int prefixLength, byte value) {
+            int node = 0;
+            for (int i = 0; i < prefixLength; i++) {
+                int slot = (node << 1) | bit(network, i);
+                int next = children[slot];
+                if (next == 0) {
+                    next = allocate();
+                    children[slot] = next;
+                }
+                node = next;
+            }
+            values[node] = value;
+        }
+
+        private byte match(byte[] address) {
+            int node = 0;
+            byte matched = values[0];
+            int bits = address.length << 3;
+            for (int i = 0; i < bits; i++) {
+                node = children[(node << 1) | bit(address, i)];
+                if (node == 0) {
+                    break;
+                }
+                if (values[node] != 0) {
+                    matched = values[node];
+                }
+            }
+            return matched;
+        }
+
+        private int allocate() {
+            if (nodes == values.length) {
+                values = Arrays.copyOf(values, values.length << 1);
+                children = Arrays.copyOf(children, children.length << 1);
+            }
+            return nodes++;
+        }
+
+        private Tree trim() {
+            children = Arrays.copyOf(children, nodes << 1);
+            values = Arrays.copyOf(values, nodes);
+            return this;
+        }
+
+        private static int bit(byte[] address, int index) {
+            return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.aiolos.octopus.gateway.util;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.apache.commons.lang3.StringUtils;
@@ -19,6 +20,8 @@ public class JwtUtil {
     // 使用足够长的密钥（至少 256 位 / 32 字符）
     private static final String SECRET_STRING = "AiolosBadgerCiamSecretKeyForJwtAuthentication2026!";
     private static final SecretKey SECRET_KEY = Keys.hmacShaKeyFor(SECRET_STRING.getBytes(StandardCharsets.UTF_8));
+    // 解析器不可变且线程安全，复用避免每次校验都重新构建
+    private static final JwtParser PARSER = Jwts.parserBuilder().setSigningKey(SECRET_KEY).build();
 
     // 默认过期时间，Access Token 2小时，Refresh Token 7天
     public static final long ACCESS_TOKEN_EXPIRE_MILLIS = 2 * 60 * 60 * 1000L;
@@ -65,11 +68,7 @@ public class JwtUtil {
             throw new IllegalArgumentException("Token cannot be blank");
         }
 
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return PARSER.parseClaimsJws(token).getBody();
     }
 
     /**
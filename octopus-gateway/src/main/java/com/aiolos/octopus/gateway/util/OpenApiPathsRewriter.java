@@ -0,0 +1,111 @@
+package com.aiolos.octopus.gateway.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import java.io.IOException;
+
+/**
+ * OpenAPI 文档流式改写
+ * 使用 Jackson 非阻塞解析器逐块读取文档，逐个 token 写入生成器，只给根对象 paths 下的直接子键加上前缀，其余内容原样复制
+ * 不构建 JSON 树，也不需要把整个文档读入内存，内存占用只与单个输入块大小相关
+ * 每个响应使用一个实例，非线程安全
+ */
+public final class OpenApiPathsRewriter {
+
+    private static final String PATHS = "paths";
+
+    private final String prefix;
+
+    private final JsonParser parser;
+
+    private final ByteArrayFeeder feeder;
+
+    private final ByteArrayBuilder output = new ByteArrayBuilder();
+
+    private final JsonGenerator generator;
+
+    private int depth;
+
+    // paths 对象所在的嵌套深度，未进入时为 -1
+    private int pathsDepth = -1;
+
+    // 上一个 token 是根对象下的 paths 键
+    private boolean pathsNext;
+
+    public OpenApiPathsRewriter(JsonFactory jsonFactory, String prefix) throws IOException {
+        this.prefix = prefix;
+        this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.generator = jsonFactory.createGenerator(output);
+    }
+
+    /**
+     * 写入一块输入
+     *
+     * @return 本块输入对应的改写结果，可能为空数组
+     */
+    public byte[] feed(byte[] chunk) throws IOException {
+        feeder.feedInput(chunk, 0, chunk.length);
+        drain();
+        return flushOutput();
+    }
+
+    /**
+     * 输入结束，返回剩余的改写结果
+     */
+    public byte[] finish() throws IOException {
+        feeder.endOfInput();
+        drain();
+        generator.close();
+        parser.close();
+        return flushOutput();
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    depth++;
+                    if (pathsNext && token == JsonToken.START_OBJECT) {
+                        pathsDepth = depth;
+                    }
+                    pathsNext = false;
+                    generator.copyCurrentEvent(parser);
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    if (depth == pathsDepth) {
+                        pathsDepth = -1;
+                    }
+                    depth--;
+                    generator.copyCurrentEvent(parser);
+                }
+                case FIELD_NAME -> {
+                    String name = parser.currentName();
+                    if (depth == pathsDepth) {
+                        generator.writeFieldName(prefix + name);
+                    } else {
+                        pathsNext = depth == 1 && PATHS.equals(name);
+                        generator.writeFieldName(name);
+                    }
+                }
+                default -> {
+                    pathsNext = false;
+                    generator.copyCurrentEvent(parser);
+                }
+            }
+        }
+    }
+
+    private byte[] flushOutput() throws IOException {
+        generator.flush();
+        byte[] bytes = output.toByteArray();
+        output.reset();
+        return bytes;
+    }
+}
@@ -0,0 +1,159 @@
+package com.aiolos.octopus.gateway.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 路径模式前缀树
+ * 按 "/" 切分路径段构建，支持 Ant 风格的 ?、*、{var}、{var:regex} 段内通配以及 ** 跨段通配
+ * 每个模式挂载一个位标记，匹配时返回所有命中模式标记的并集
+ * 构建完成后只读，可在多线程间安全共享
+ */
+public class PathPatternTrie {
+
+    private static final String ANY_DEPTH = "**";
+
+    private final Node root = new Node();
+
+    private int size;
+
+    /**
+     * 插入一个路径模式
+     *
+     * @param pattern Ant 风格路径模式，如 /living-room/**
+     * @param flags   命中该模式时返回的位标记
+     */
+    public void insert(String pattern, int flags) {
+        if (StringUtils.isBlank(pattern)) {
+            return;
+        }
+        Node node = root;
+        for (String segment : tokenize(pattern.trim())) {
+            node = node.child(segment);
+        }
+        node.flags |= flags;
+        size++;
+    }
+
+    /**
+     * 从指定段下标开始匹配，返回命中模式的标记并集
+     *
+     * @param segments 已切分的路径段
+     * @param from     起始段下标，用于跳过服务名前缀
+     * @param wanted   关心的标记，全部命中后提前结束
+     */
+    public int match(String[] segments, int from, int wanted) {
+        return match(root, segments, from, wanted, 0);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按 "/" 切分路径，忽略空段，与 AntPathMatcher 的切分规则一致
+     */
+    public static String[] tokenize(String path) {
+        if (path == null || path.isEmpty()) {
+            return new String[0];
+        }
+        int count = 0;
+        int length = path.length();
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(i) != '/' && (i == 0 || path.charAt(i - 1) == '/')) {
+                count++;
+            }
+        }
+        String[] segments = new String[count];
+        int index = 0;
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean separator = i == length || path.charAt(i) == '/';
+            if (separator) {
+                if (start >= 0) {
+                    segments[index++] = path.substring(start, i);
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return segments;
+    }
+
+    private int match(Node node, String[] segments, int index, int wanted, int acc) {
+        if (node.anyDepth != null) {
+            // ** 可以匹配 0 到 n 个路径段
+            for (int next = index; next <= segments.length; next++) {
+                acc = match(node.anyDepth, segments, next, wanted, acc);
+                if ((acc & wanted) == wanted) {
+                    return acc;
+                }
+            }
+        }
+        if (index == segments.length) {
+            return acc | node.flags;
+        }
+        String segment = segments[index];
+        if (node.literals != null) {
+            Node literal = node.literals.get(segment);
+            if (literal != null) {
+                acc = match(literal, segments, index + 1, wanted, acc);
+                if ((acc & wanted) == wanted) {
+                    return acc;
+                }
+            }
+        }
+        for (int i = 0; i < node.wildcards.length; i++) {
+            if (node.wildcards[i].matches(segment)) {
+                acc = match(node.wildcardNodes[i], segments, index + 1, wanted, acc);
+                if ((acc & wanted) == wanted) {
+                    return acc;
+                }
+            }
+        }
+        return acc;
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> literals;
+
+        private PathSegmentMatcher[] wildcards = new PathSegmentMatcher[0];
+
+        private Node[] wildcardNodes = new Node[0];
+
+        private Node anyDepth;
+
+        private int flags;
+
+        private Node child(String segment) {
+            if (ANY_DEPTH.equals(segment)) {
+                if (anyDepth == null) {
+                    anyDepth = new Node();
+                }
+                return anyDepth;
+            }
+            if (!PathSegmentMatcher.isWildcard(segment)) {
+                if (literals == null) {
+                    literals = new HashMap<>();
+                }
+                return literals.computeIfAbsent(segment, key -> new Node());
+            }
+            for (int i = 0; i < wildcards.length; i++) {
+                if (wildcards[i].pattern().equals(segment)) {
+                    return wildcardNodes[i];
+                }
+            }
+            Node node = new Node();
+            wildcards = Arrays.copyOf(wildcards, wildcards.length + 1);
+            wildcards[wildcards.length - 1] = new PathSegmentMatcher(segment);
+            wildcardNodes = Arrays.copyOf(wildcardNodes, wildcardNodes.length + 1);
+            wildcardNodes[wildcardNodes.length - 1] = node;
+            return node;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.aiolos.octopus.gateway.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 单个路径段的通配匹配器
+ * {var} 视为 *，{var:regex} 在构建时预编译为正则
+ */
+final class PathSegmentMatcher {
+
+    private final String pattern;
+
+    private final String glob;
+
+    private final Pattern regex;
+
+    PathSegmentMatcher(String pattern) {
+        this.pattern = pattern;
+        if (pattern.contains(":") && pattern.indexOf('{') >= 0) {
+            this.glob = null;
+            this.regex = Pattern.compile(toRegex(pattern));
+        } else {
+            this.glob = pattern.replaceAll("\\{[^}]*}", "*");
+            this.regex = null;
+        }
+    }
+
+    String pattern() {
+        return pattern;
+    }
+
+    static boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    boolean matches(String segment) {
+        if (regex != null) {
+            return regex.matcher(segment).matches();
+        }
+        return globMatches(glob, segment);
+    }
+
+    /**
+     * 仅支持 ? 与 * 的段内通配匹配，* 回溯时只记录最近一次星号位置
+     */
+    private static boolean globMatches(String glob, String text) {
+        int g = 0;
+        int t = 0;
+        int star = -1;
+        int mark = 0;
+        while (t < text.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == text.charAt(t))) {
+                g++;
+                t++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                mark = t;
+            } else if (star >= 0) {
+                g = star + 1;
+                t = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    private static String toRegex(String pattern) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '{') {
+                int end = pattern.indexOf('}', i);
+                if (end < 0) {
+                    literal.append(c);
+                    i++;
+                    continue;
+                }
+                flushLiteral(literal, parts);
+                String variable = pattern.substring(i + 1, end);
+                int colon = variable.indexOf(':');
+                parts.add(colon >= 0 ? "(" + variable.substring(colon + 1) + ")" : "(.*)");
+                i = end + 1;
+            } else if (c == '*') {
+                flushLiteral(literal, parts);
+                parts.add(".*");
+                i++;
+            } else if (c == '?') {
+                flushLiteral(literal, parts);
+                parts.add(".");
+                i++;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        flushLiteral(literal, parts);
+        return String.join("", parts);
+    }
+
+    private static void flushLiteral(StringBuilder literal, List<String> parts) {
+        if (literal.length() > 0) {
+            parts.add(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+}
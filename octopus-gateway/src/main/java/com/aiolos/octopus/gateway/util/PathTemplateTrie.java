@@ -0,0 +1,125 @@
+package com.aiolos.octopus.gateway.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 路径模板前缀树
+ * 每个模板挂载一个值，按最长前缀匹配：模板匹配请求路径的前若干段即视为命中，匹配段数最多者优先，
+ * 段数相同时字面量段多者优先，因此 /item/detail 优先于 /item/{id}，/item/{id} 优先于 /item
+ * 段内支持 ?、*、{var}、{var:regex} 通配，不支持 ** 跨段通配
+ * 构建完成后只读，可在多线程间安全共享
+ */
+public class PathTemplateTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    private int size;
+
+    /**
+     * 插入一个路径模板
+     *
+     * @param template 路径模板，如 /item/{id}
+     * @param value    命中该模板时返回的值，同一模板重复插入时保留先插入的值
+     */
+    public void insert(String template, T value) {
+        if (StringUtils.isBlank(template)) {
+            return;
+        }
+        Node<T> node = root;
+        for (String segment : PathPatternTrie.tokenize(template.trim())) {
+            node = node.child(segment);
+        }
+        if (node.value == null) {
+            node.value = value;
+            size++;
+        }
+    }
+
+    /**
+     * 从指定段下标开始做最长前缀匹配
+     *
+     * @param segments {@link PathPatternTrie#tokenize(String)} 切分后的请求路径
+     * @param from     起始段下标，用于跳过服务名前缀
+     * @return 未命中时返回 null
+     */
+    public Match<T> longestMatch(String[] segments, int from) {
+        return match(root, segments, from, 0, 0, null);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private Match<T> match(Node<T> node, String[] segments, int index, int depth, int literals, Match<T> best) {
+        if (node.value != null && (best == null || depth > best.depth
+                || (depth == best.depth && literals > best.literals))) {
+            best = new Match<>(node.value, depth, literals);
+        }
+        if (index == segments.length) {
+            return best;
+        }
+        String segment = segments[index];
+        if (node.literals != null) {
+            Node<T> literal = node.literals.get(segment);
+            if (literal != null) {
+                best = match(literal, segments, index + 1, depth + 1, literals + 1, best);
+            }
+        }
+        for (int i = 0; i < node.wildcards.length; i++) {
+            if (node.wildcards[i].matches(segment)) {
+                best = match(node.wildcardNodes[i], segments, index + 1, depth + 1, literals, best);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 匹配结果
+     *
+     * @param value    命中模板挂载的值
+     * @param depth    匹配的路径段数
+     * @param literals 其中字面量段数
+     */
+    public record Match<T>(T value, int depth, int literals) {
+    }
+
+    private static final class Node<T> {
+
+        private Map<String, Node<T>> literals;
+
+        private PathSegmentMatcher[] wildcards = new PathSegmentMatcher[0];
+
+        private Node<T>[] wildcardNodes = newNodes(0);
+
+        private T value;
+
+        private Node<T> child(String segment) {
+            if (!PathSegmentMatcher.isWildcard(segment)) {
+                if (literals == null) {
+                    literals = new HashMap<>();
+                }
+                return literals.computeIfAbsent(segment, key -> new Node<>());
+            }
+            for (int i = 0; i < wildcards.length; i++) {
+                if (wildcards[i].pattern().equals(segment)) {
+                    return wildcardNodes[i];
+                }
+            }
+            Node<T> node = new Node<>();
+            wildcards = Arrays.copyOf(wildcards, wildcards.length + 1);
+            wildcards[wildcards.length - 1] = new PathSegmentMatcher(segment);
+            wildcardNodes = Arrays.copyOf(wildcardNodes, wildcardNodes.length + 1);
+            wildcardNodes[wildcardNodes.length - 1] = node;
+            return node;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newNodes(int length) {
+            return (Node<T>[]) new Node[length];
+        }
+    }
+}
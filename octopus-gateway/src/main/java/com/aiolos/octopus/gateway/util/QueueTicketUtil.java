@@ -0,0 +1,72 @@
+package com.aiolos.octopus.gateway.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 秒杀排队票据签名工具类
+ * 票据记录活动ID、排队序号与过期时间，用 HMAC-SHA256 签名，网关查询排队状态时本地验签即可
+ * 格式：base64url(activityId).sequence.expireAtMillis.base64url(signature)
+ * 签名密钥来自配置 rate-limit.seckill.ticket-secrets
+ */
+public class QueueTicketUtil {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 生成签名后的排队票据
+     *
+     * @param keys           签名密钥
+     * @param activityId     秒杀活动ID
+     * @param sequence       排队序号
+     * @param expireAtMillis 过期时间戳（毫秒）
+     */
+    public static String sign(HmacKeyRing keys, String activityId, long sequence, long expireAtMillis) {
+        String payload = ENCODER.encodeToString(activityId.getBytes(StandardCharsets.UTF_8))
+                + "." + sequence + "." + expireAtMillis;
+        return payload + "." + ENCODER.encodeToString(keys.sign(payload));
+    }
+
+    /**
+     * 校验签名并解析排队票据，密钥环中任一密钥签名的都视为合法
+     *
+     * @return 签名不合法、格式错误或已过期时返回 null
+     */
+    public static QueueTicket verify(HmacKeyRing keys, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        int signatureIndex = value.lastIndexOf('.');
+        if (signatureIndex <= 0) {
+            return null;
+        }
+        String payload = value.substring(0, signatureIndex);
+        try {
+            byte[] signature = DECODER.decode(value.substring(signatureIndex + 1));
+            if (!keys.verify(payload, signature)) {
+                return null;
+            }
+            String[] parts = StringUtils.split(payload, '.');
+            if (parts.length != 3) {
+                return null;
+            }
+            long expireAtMillis = Long.parseLong(parts[2]);
+            if (expireAtMillis <= System.currentTimeMillis()) {
+                return null;
+            }
+            String activityId = new String(DECODER.decode(parts[0]), StandardCharsets.UTF_8);
+            return new QueueTicket(activityId, Long.parseLong(parts[1]), expireAtMillis);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 排队票据
+     */
+    public record QueueTicket(String activityId, long sequence, long expireAtMillis) {
+    }
+}
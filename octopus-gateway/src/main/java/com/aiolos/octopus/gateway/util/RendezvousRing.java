@@ -0,0 +1,134 @@
+package com.aiolos.octopus.gateway.util;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 一致性哈希环（Rendezvous / HRW 哈希）
+ * 每个节点预先计算哈希种子，选择时对请求键与种子混合后取得分最高的节点
+ * 节点从 N 个扩到 N+1 个时只有约 1/(N+1) 的键会迁移，其余键保持原节点不变
+ * 节点权重不同时使用加权 HRW（得分 = weight / -ln(u)），各节点命中比例与权重成正比
+ * 构建完成后只读，选择过程不创建对象
+ */
+public final class RendezvousRing<T> {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Object[] nodes;
+
+    private final long[] seeds;
+
+    private final double[] weights;
+
+    private final boolean weighted;
+
+    private RendezvousRing(Object[] nodes, long[] seeds, double[] weights, boolean weighted) {
+        this.nodes = nodes;
+        this.seeds = seeds;
+        this.weights = weights;
+        this.weighted = weighted;
+    }
+
+    /**
+     * 构建哈希环
+     *
+     * @param nodes 节点列表
+     * @param idFn  节点的稳定标识，如 instanceId，决定节点在环上的位置
+     */
+    public static <T> RendezvousRing<T> of(List<T> nodes, Function<T, String> idFn) {
+        return of(nodes, idFn, node -> 1.0);
+    }
+
+    /**
+     * 构建加权哈希环
+     *
+     * @param weightFn 节点权重，小于等于 0 的节点不参与选择
+     */
+    public static <T> RendezvousRing<T> of(List<T> nodes, Function<T, String> idFn, ToDoubleFunction<T> weightFn) {
+        Object[] array = nodes.stream().filter(node -> weightFn.applyAsDouble(node) > 0).toArray();
+        long[] seeds = new long[array.length];
+        double[] weights = new double[array.length];
+        boolean weighted = false;
+        for (int i = 0; i < array.length; i++) {
+            @SuppressWarnings("unchecked")
+            T node = (T) array[i];
+            seeds[i] = hash(idFn.apply(node));
+            weights[i] = weightFn.applyAsDouble(node);
+            weighted |= weights[i] != weights[0];
+        }
+        return new RendezvousRing<>(array, seeds, weights, weighted);
+    }
+
+    /**
+     * 按请求键选择节点
+     *
+     * @return 环为空时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public T select(long key) {
+        if (nodes.length == 0) {
+            return null;
+        }
+        if (nodes.length == 1) {
+            return (T) nodes[0];
+        }
+        long mixedKey = mix(key);
+        int best = 0;
+        if (weighted) {
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < seeds.length; i++) {
+                double score = weights[i] / -Math.log(toUnitInterval(mix(mixedKey ^ seeds[i])));
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            return (T) nodes[best];
+        }
+        long bestScore = Long.MIN_VALUE;
+        for (int i = 0; i < seeds.length; i++) {
+            long score = mix(mixedKey ^ seeds[i]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return (T) nodes[best];
+    }
+
+    /**
+     * 将 64 位哈希映射到开区间 (0, 1)
+     */
+    private static double toUnitInterval(long hash) {
+        return ((hash >>> 11) + 0.5) * 0x1.0p-53;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * 64 位 FNV-1a 字符串哈希，结果再做一次混合以打散低位
+     */
+    public static long hash(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+        }
+        return mix(hash);
+    }
+
+    /**
+     * SplitMix64 终结函数
+     */
+    public static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -1,12 +1,19 @@
-local key = KEYS[1]
+-- KEYS 由网关以限流键为 hash tag 生成，集群模式下落在同一槽位：KEYS[1] 封禁标记，KEYS[2] 窗口计数器
+local limitKey = KEYS[1]
+local counterKey = KEYS[2]
 local maxRequests = tonumber(ARGV[1])
 local timeWindow = tonumber(ARGV[2])
 local banTime = tonumber(ARGV[3])
-local limitKey = key .. ':lock'
-local counterKey = key .. ':counter'
+local broadcast = tonumber(ARGV[4]) == 1
+-- 限流键本身，仅用于封禁广播
+local key = ARGV[5]
 
-if redis.call('EXISTS', limitKey) == 1 then
-    return 1
+-- 返回值：0 放行，大于 0 表示剩余封禁毫秒数，供网关写入本地封禁缓存
+local ttl = redis.call('PTTL', limitKey)
+if ttl > 0 then
+    return ttl
+elseif ttl == -1 then
+    return banTime * 1000
 end
 
 local count = redis.call('INCR', counterKey)
@@ -17,7 +24,10 @@ end
 if count > maxRequests then
     redis.call('SETEX', limitKey, banTime, '1')
     redis.call('DEL', counterKey)
-    return 1
+    if broadcast then
+        redis.call('PUBLISH', 'rate-limit:ban', key .. ' ' .. banTime * 1000)
+    end
+    return banTime * 1000
 end
 
-return 0
\ No newline at end of file
+return 0
@@ -0,0 +1,45 @@
+-- GCRA（通用信元速率算法），每个客户端只占用一个键，保存理论到达时间 TAT
+-- 允许在 timeWindow 内突发 maxRequests 个请求，之后按 timeWindow / maxRequests 的间隔匀速放行
+-- 超限后键的值改为 ban 并按封禁时间过期，封禁语义与固定窗口一致
+redis.replicate_commands()
+
+-- KEYS[1] 由网关以限流键为 hash tag 生成
+local gcraKey = KEYS[1]
+local maxRequests = tonumber(ARGV[1])
+local timeWindow = tonumber(ARGV[2])
+local banTime = tonumber(ARGV[3])
+local broadcast = tonumber(ARGV[4]) == 1
+-- 限流键本身，仅用于封禁广播
+local key = ARGV[5]
+
+-- 返回值：0 放行，大于 0 表示剩余封禁毫秒数
+local value = redis.call('GET', gcraKey)
+if value == 'ban' then
+    local ttl = redis.call('PTTL', gcraKey)
+    if ttl > 0 then
+        return ttl
+    end
+    return banTime * 1000
+end
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local interval = timeWindow * 1000 / maxRequests
+local tolerance = timeWindow * 1000 - interval
+
+local tat = tonumber(value)
+if tat == nil or tat < now then
+    tat = now
+end
+
+if tat - now > tolerance then
+    redis.call('SET', gcraKey, 'ban', 'PX', banTime * 1000)
+    if broadcast then
+        redis.call('PUBLISH', 'rate-limit:ban', key .. ' ' .. banTime * 1000)
+    end
+    return banTime * 1000
+end
+
+local newTat = tat + interval
+redis.call('SET', gcraKey, string.format('%d', math.ceil(newTat)), 'PX', math.ceil(newTat - now))
+return 0
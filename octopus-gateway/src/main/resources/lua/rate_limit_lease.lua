@@ -0,0 +1,40 @@
+-- KEYS 由网关以限流键为 hash tag 生成，与 rate_limit.lua 共用：KEYS[1] 封禁标记，KEYS[2] 窗口计数器
+local limitKey = KEYS[1]
+local counterKey = KEYS[2]
+local maxRequests = tonumber(ARGV[1])
+local timeWindow = tonumber(ARGV[2])
+local banTime = tonumber(ARGV[3])
+local broadcast = tonumber(ARGV[4]) == 1
+local leaseSize = tonumber(ARGV[5])
+-- 限流键本身，仅用于封禁广播
+local key = ARGV[6]
+
+-- 返回 {授予许可数, 毫秒数}
+-- 授予数大于 0 时毫秒数为当前窗口剩余时间，租约随窗口一起过期；授予数为 0 时为剩余封禁毫秒数
+local ttl = redis.call('PTTL', limitKey)
+if ttl > 0 then
+    return {0, ttl}
+elseif ttl == -1 then
+    return {0, banTime * 1000}
+end
+
+local count = redis.call('INCRBY', counterKey, leaseSize)
+if count == leaseSize then
+    redis.call('EXPIRE', counterKey, timeWindow)
+end
+
+local granted = math.min(leaseSize, maxRequests - (count - leaseSize))
+if granted <= 0 then
+    redis.call('SETEX', limitKey, banTime, '1')
+    redis.call('DEL', counterKey)
+    if broadcast then
+        redis.call('PUBLISH', 'rate-limit:ban', key .. ' ' .. banTime * 1000)
+    end
+    return {0, banTime * 1000}
+end
+
+local windowTtl = redis.call('PTTL', counterKey)
+if windowTtl < 0 then
+    windowTtl = timeWindow * 1000
+end
+return {granted, windowTtl}
@@ -0,0 +1,51 @@
+-- 滑动窗口计数器，每个客户端只占用一个哈希键
+-- w 为当前窗口编号，c 为当前窗口计数，p 为上一窗口计数，按上一窗口剩余重叠比例加权估算最近 timeWindow 内的请求数
+-- 超限后键中只保留封禁到期时间 b，并按封禁时间过期，封禁语义与固定窗口一致
+redis.replicate_commands()
+
+-- KEYS[1] 由网关以限流键为 hash tag 生成
+local slidingKey = KEYS[1]
+local maxRequests = tonumber(ARGV[1])
+local timeWindow = tonumber(ARGV[2])
+local banTime = tonumber(ARGV[3])
+local broadcast = tonumber(ARGV[4]) == 1
+-- 限流键本身，仅用于封禁广播
+local key = ARGV[5]
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local windowMillis = timeWindow * 1000
+
+-- 返回值：0 放行，大于 0 表示剩余封禁毫秒数
+local fields = redis.call('HMGET', slidingKey, 'w', 'c', 'p', 'b')
+local banUntil = tonumber(fields[4])
+if banUntil ~= nil and banUntil > now then
+    return banUntil - now
+end
+
+local window = math.floor(now / windowMillis)
+local storedWindow = tonumber(fields[1])
+local current = 0
+local previous = 0
+if storedWindow == window then
+    current = tonumber(fields[2]) or 0
+    previous = tonumber(fields[3]) or 0
+elseif storedWindow == window - 1 then
+    previous = tonumber(fields[2]) or 0
+end
+
+local elapsed = now - window * windowMillis
+local estimated = previous * (windowMillis - elapsed) / windowMillis + current
+if estimated + 1 > maxRequests then
+    redis.call('DEL', slidingKey)
+    redis.call('HSET', slidingKey, 'b', string.format('%d', now + banTime * 1000))
+    redis.call('PEXPIRE', slidingKey, banTime * 1000)
+    if broadcast then
+        redis.call('PUBLISH', 'rate-limit:ban', key .. ' ' .. banTime * 1000)
+    end
+    return banTime * 1000
+end
+
+redis.call('HSET', slidingKey, 'w', window, 'c', current + 1, 'p', previous)
+redis.call('PEXPIRE', slidingKey, windowMillis * 2)
+return 0
@@ -0,0 +1,23 @@
+-- KEYS[1] 队头序号，KEYS[2] 队尾序号，KEYS[3] 排队有序集合，三个键使用同一个 hash tag
+-- ARGV[1] 本次已从令牌桶取得的令牌数，队头最多推进到队尾，0 表示只读取队列状态
+-- ARGV[2] 队列键的过期时间（秒）
+-- ARGV[3] 网关当前时间（毫秒），票据已过期的排队记录无法再使用，从有序集合中移除
+-- 返回 {实际放行数, 推进后的队头序号, 队尾序号}，未用掉的令牌由网关归还令牌桶
+local granted = tonumber(ARGV[1])
+local ttl = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+
+-- 只有使用票据时才 ZREM，放行后未使用和中途放弃的记录按票据到期时间清理，有序集合不随活动时长增长
+redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', '(' .. now)
+
+local head = tonumber(redis.call('GET', KEYS[1]) or '0')
+local tail = tonumber(redis.call('GET', KEYS[2]) or '0')
+
+local admitted = math.min(granted, tail - head)
+if admitted > 0 then
+    head = redis.call('INCRBY', KEYS[1], admitted)
+    redis.call('EXPIRE', KEYS[1], ttl)
+else
+    admitted = 0
+end
+return {admitted, head, tail}
@@ -0,0 +1,9 @@
+-- KEYS[1] 排队有序集合，KEYS[2] 队头序号，两个键使用同一个 hash tag
+-- ARGV[1] 票据中的排队序号
+-- 返回值：1 放行，0 票据已使用过，小于 0 表示尚未轮到，绝对值为前方剩余人数
+local sequence = tonumber(ARGV[1])
+local head = tonumber(redis.call('GET', KEYS[2]) or '0')
+if sequence > head then
+    return head - sequence
+end
+return redis.call('ZREM', KEYS[1], sequence)
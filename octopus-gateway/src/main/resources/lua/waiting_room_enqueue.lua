@@ -0,0 +1,22 @@
+-- KEYS[1] 队尾序号，KEYS[2] 排队有序集合，KEYS[3] 队头序号（已放行到的序号），三个键使用同一个 hash tag
+-- ARGV[1] 队列键的过期时间（秒），活动结束后无人排队时自动清理
+-- ARGV[2] 票据到期时间（毫秒），作为有序集合的分值，票据过期后由 waiting_room_advance.lua 清理
+-- 返回 {排队序号, 当前队头序号}
+local ttl = tonumber(ARGV[1])
+local expireAt = tonumber(ARGV[2])
+
+local head = tonumber(redis.call('GET', KEYS[3]) or '0')
+local sequence = redis.call('INCR', KEYS[1])
+if sequence <= head then
+    -- 队尾键先于队头键过期时从队头之后重新编号
+    sequence = head + 1
+    redis.call('SET', KEYS[1], sequence)
+end
+redis.call('ZADD', KEYS[2], expireAt, sequence)
+
+redis.call('EXPIRE', KEYS[1], ttl)
+redis.call('EXPIRE', KEYS[2], ttl)
+if head > 0 then
+    redis.call('EXPIRE', KEYS[3], ttl)
+end
+return {sequence, head}
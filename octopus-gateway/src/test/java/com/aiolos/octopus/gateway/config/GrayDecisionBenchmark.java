@@ -0,0 +1,65 @@
+package com.aiolos.octopus.gateway.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 灰度决策基准测试
+ * 配合 GC profiler 查看 gc.alloc.rate.norm，每次评估应为 0 B/op
+ * 在 IDE 中运行 main 方法，或 test-compile 后以测试类路径执行 org.openjdk.jmh.Main GrayDecisionBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrayDecisionBenchmark {
+
+    private ApolloGrayRuleService service;
+
+    private final Long whitelistedUser = 1_000_007L;
+
+    private final Long percentUser = 2_000_005L;
+
+    @Setup
+    public void setUp() {
+        service = GrayRuleConfigs.typicalService();
+    }
+
+    @Benchmark
+    public GrayDecision whitelistHit() {
+        return service.decide("search-provider", "/shop/searchES", whitelistedUser);
+    }
+
+    @Benchmark
+    public GrayDecision percentHitBySuffix() {
+        return service.decide("shop-provider", "/v2/item/es", percentUser);
+    }
+
+    @Benchmark
+    public GrayDecision outOfScopePath() {
+        return service.decide("shop-provider", "/shop/list", whitelistedUser);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GrayDecisionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,53 @@
+package com.aiolos.octopus.gateway.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GrayDecisionTest {
+
+    private final ApolloGrayRuleService service = GrayRuleConfigs.typicalService();
+
+    @Test
+    void decidesScopeAndHit() {
+        assertThat(service.decide("search-provider", "/shop/searchES", 1_000_007L).isHit()).isTrue();
+        assertThat(service.decide("search-provider", "/shop/searchES", 1_000_007L).getInstanceTag()).isEqualTo("es-v2");
+        // 不在白名单但落在 10% 灰度内
+        assertThat(service.decide("shop-provider", "/shop/profile/searches", 2_000_005L).isHit()).isTrue();
+        assertThat(service.decide("shop-provider", "/shop/searchES", 2_000_050L)).isSameAs(GrayDecision.MISS);
+        assertThat(service.decide("shop-provider", "/shop/searchES", null)).isSameAs(GrayDecision.MISS);
+        // 后缀匹配
+        assertThat(service.decide("shop-provider", "/v2/item/es", 1_000_000L).isHit()).isTrue();
+        assertThat(service.decide("order-provider", "/shop/searchES", 1_000_000L)).isSameAs(GrayDecision.OUT_OF_SCOPE);
+        assertThat(service.decide("shop-provider", "/shop/list", 1_000_000L)).isSameAs(GrayDecision.OUT_OF_SCOPE);
+    }
+
+    @Test
+    void evaluationDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Long[] userIds = {1_000_007L, 2_000_005L, 2_000_050L, null};
+        String[] paths = {"/shop/searchES", "/shop/list", "/v2/item/es"};
+        int sink = 0;
+        for (int i = 0; i < 20_000; i++) {
+            sink += evaluate(userIds, paths, i);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            sink += evaluate(userIds, paths, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(sink).isPositive();
+        // 10 万次评估若每次分配一个对象至少 1.6MB，这里只留出测量本身的少量分配
+        assertThat(allocated).isLessThan(4 * 1024);
+    }
+
+    private int evaluate(Long[] userIds, String[] paths, int i) {
+        GrayDecision decision = service.decide("shop-provider", paths[i % paths.length], userIds[i % userIds.length]);
+        return decision.isHit() ? 1 : 0;
+    }
+}
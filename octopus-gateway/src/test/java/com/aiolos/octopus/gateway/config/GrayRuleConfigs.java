@@ -0,0 +1,53 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.ctrip.framework.apollo.Config;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 以 Map 模拟 Apollo 配置
+ */
+final class GrayRuleConfigs {
+
+    private GrayRuleConfigs() {
+    }
+
+    static Config of(Map<String, String> properties) {
+        Config config = mock(Config.class);
+        when(config.getProperty(anyString(), any())).thenAnswer(invocation ->
+                properties.getOrDefault(invocation.<String>getArgument(0), invocation.getArgument(1)));
+        when(config.getBooleanProperty(anyString(), any())).thenAnswer(invocation -> {
+            String value = properties.get(invocation.<String>getArgument(0));
+            return value == null ? invocation.getArgument(1) : Boolean.valueOf(value);
+        });
+        when(config.getIntProperty(anyString(), any())).thenAnswer(invocation -> {
+            String value = properties.get(invocation.<String>getArgument(0));
+            return value == null ? invocation.getArgument(1) : Integer.valueOf(value);
+        });
+        return config;
+    }
+
+    /**
+     * 典型线上规则：200 个白名单用户、10% 灰度、限定服务与路径
+     */
+    static ApolloGrayRuleService typicalService() {
+        StringBuilder userIds = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            userIds.append(i > 0 ? "," : "").append(1_000_000 + i * 7);
+        }
+        ApolloGrayRuleService service = new ApolloGrayRuleService();
+        service.apply(of(Map.of(
+                "gateway.es.gray.enabled", "true",
+                "gateway.es.gray.user-ids", userIds.toString(),
+                "gateway.es.gray.percent", "10",
+                "gateway.es.gray.match.service-ids", "shop-provider,Search-Provider",
+                "gateway.es.gray.match.path-patterns", "/shop/searchES,/shop/profile/searchES,/ES",
+                "gateway.es.gray.instance-tag", "es-v2")));
+        return service;
+    }
+}
@@ -0,0 +1,105 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.aiolos.octopus.gateway.ratelimit.RateLimitKeyResolvers;
+import com.aiolos.octopus.gateway.util.PathPatternTrie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimitRuleIndexTest {
+
+    private final GatewayRateLimitProperties properties = new GatewayRateLimitProperties();
+
+    private final RateLimitRuleIndex index = new RateLimitRuleIndex();
+
+    private final ServerWebExchange exchange = mock(ServerWebExchange.class);
+
+    @BeforeEach
+    void setUp() {
+        RateLimitKeyResolvers resolvers = mock(RateLimitKeyResolvers.class);
+        when(resolvers.of(any())).thenReturn(unused -> "ip:10.0.0.1");
+        ReflectionTestUtils.setField(index, "rateLimitProperties", properties);
+        ReflectionTestUtils.setField(index, "rateLimitKeyResolvers", resolvers);
+
+        GatewayRateLimitProperties.DefaultConfig defaults = new GatewayRateLimitProperties.DefaultConfig();
+        defaults.setMaxRequests(100);
+        defaults.setTimeWindow(10);
+        GatewayRateLimitProperties.ServiceConfig service = new GatewayRateLimitProperties.ServiceConfig();
+        service.setId("shop");
+        service.setDefaultConfig(defaults);
+        service.setInterfaces(List.of(
+                rule("/item", 50),
+                rule("/item/{id}", 20),
+                rule("/item/detail", 10)));
+        properties.setServices(List.of(service));
+        index.rebuild();
+    }
+
+    @Test
+    void longestAndMostLiteralTemplateWins() {
+        assertThat(resolve("/item/detail").maxRequests()).isEqualTo(10);
+        assertThat(resolve("/item/42").maxRequests()).isEqualTo(20);
+        assertThat(resolve("/item").maxRequests()).isEqualTo(50);
+        // 带服务名前缀的路径同样命中接口规则
+        assertThat(resolve("/shop/item/42").maxRequests()).isEqualTo(20);
+    }
+
+    @Test
+    void interfaceRuleInheritsUnsetFieldsFromServiceDefault() {
+        RateLimitRuleIndex.Rule rule = resolve("/item/42");
+
+        assertThat(rule.timeWindow()).isEqualTo(10);
+        assertThat(rule.algorithm()).isEqualTo(GatewayRateLimitProperties.Algorithm.FIXED_WINDOW);
+    }
+
+    @Test
+    void pathParametersShareTemplateKeyWithoutHashTagBraces() {
+        String first = resolve("/item/1").key(exchange);
+        String second = resolve("/item/2").key(exchange);
+
+        assertThat(first).isEqualTo("rate-limit:shop:/item/<id>:ip:10.0.0.1").isEqualTo(second);
+    }
+
+    @Test
+    void bracesInClientIdAreRewrittenAcrossWholeKey() {
+        RateLimitKeyResolvers resolvers = mock(RateLimitKeyResolvers.class);
+        when(resolvers.of(any())).thenReturn(unused -> "user:{1}");
+        ReflectionTestUtils.setField(index, "rateLimitKeyResolvers", resolvers);
+        index.rebuild();
+
+        assertThat(resolve("/item/1").key(exchange)).isEqualTo("rate-limit:shop:/item/<id>:user:<1>");
+    }
+
+    @Test
+    void unmatchedPathsShareServiceDefaultCounter() {
+        RateLimitRuleIndex.Rule cart = resolve("/cart/list");
+        RateLimitRuleIndex.Rule order = resolve("/order/submit");
+
+        assertThat(cart.maxRequests()).isEqualTo(100);
+        assertThat(cart.key(exchange)).isEqualTo("rate-limit:shop:*:ip:10.0.0.1").isEqualTo(order.key(exchange));
+    }
+
+    @Test
+    void unconfiguredServiceIsNotLimited() {
+        assertThat(index.resolve("cart", PathPatternTrie.tokenize("/cart/list"))).isNull();
+    }
+
+    private RateLimitRuleIndex.Rule resolve(String path) {
+        return index.resolve("shop", PathPatternTrie.tokenize(path));
+    }
+
+    private static GatewayRateLimitProperties.InterfaceConfig rule(String path, int maxRequests) {
+        GatewayRateLimitProperties.InterfaceConfig config = new GatewayRateLimitProperties.InterfaceConfig();
+        config.setPath(path);
+        config.setMaxRequests(maxRequests);
+        return config;
+    }
+}
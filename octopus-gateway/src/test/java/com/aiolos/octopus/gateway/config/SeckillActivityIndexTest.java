@@ -0,0 +1,76 @@
+package com.aiolos.octopus.gateway.config;
+
+import com.aiolos.octopus.gateway.util.PathPatternTrie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SeckillActivityIndexTest {
+
+    private final GatewayRateLimitProperties properties = new GatewayRateLimitProperties();
+
+    private final SeckillActivityIndex index = new SeckillActivityIndex();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "rateLimitProperties", properties);
+    }
+
+    @Test
+    void matchesActivityByPathPrefixWithOrWithoutServicePrefix() {
+        properties.getSeckill().setActivities(List.of(
+                activity("spring-sale", "/seckill/spring-sale"),
+                activity("any-sale", "/seckill/{name}")));
+        index.init();
+
+        // 字面量模板优先于通配模板
+        assertThat(find("/seckill/spring-sale/buy").getId()).isEqualTo("spring-sale");
+        assertThat(find("/seckill-service/seckill/spring-sale/buy").getId()).isEqualTo("spring-sale");
+        assertThat(find("/seckill/summer-sale").getId()).isEqualTo("any-sale");
+        assertThat(find("/item/list")).isNull();
+    }
+
+    @Test
+    void rejectsBlankOrUnsafeActivityIdAtStartup() {
+        List<GatewayRateLimitProperties.Activity> activities = new ArrayList<>();
+        activities.add(activity(null, "/seckill/spring-sale"));
+        properties.getSeckill().setActivities(activities);
+
+        assertThatThrownBy(index::init).isInstanceOf(IllegalStateException.class);
+
+        // 花括号会改变令牌桶与排队键的 hash tag
+        activities.set(0, activity("spring}sale", "/seckill/spring-sale"));
+        assertThatThrownBy(index::init).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void keepsPreviousIndexWhenRefreshedConfigIsInvalid() {
+        properties.getSeckill().setActivities(List.of(activity("spring-sale", "/seckill/spring-sale")));
+        index.init();
+
+        properties.getSeckill().setActivities(List.of(
+                activity("spring-sale", "/seckill/spring-sale"),
+                activity("spring-sale", "/seckill/summer-sale")));
+        index.refresh();
+
+        assertThat(index.activities()).extracting(GatewayRateLimitProperties.Activity::getPath)
+                .containsExactly("/seckill/spring-sale");
+    }
+
+    private GatewayRateLimitProperties.Activity find(String path) {
+        return index.find(PathPatternTrie.tokenize(path));
+    }
+
+    private static GatewayRateLimitProperties.Activity activity(String id, String path) {
+        GatewayRateLimitProperties.Activity activity = new GatewayRateLimitProperties.Activity();
+        activity.setId(id);
+        activity.setPath(path);
+        return activity;
+    }
+}
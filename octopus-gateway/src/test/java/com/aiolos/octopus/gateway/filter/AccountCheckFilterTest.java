@@ -0,0 +1,115 @@
+package com.aiolos.octopus.gateway.filter;
+
+import com.aiolos.common.enums.GatewayHeaderEnum;
+import com.aiolos.octopus.gateway.cache.VerifiedTokenCache;
+import com.aiolos.octopus.gateway.config.GatewayIdentityProperties;
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import com.aiolos.octopus.gateway.config.RoutePermissionIndex;
+import com.aiolos.octopus.gateway.config.SigningKeys;
+import com.aiolos.octopus.gateway.context.GatewayRequestContext;
+import com.aiolos.octopus.gateway.rpc.AccountIdentityClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+class AccountCheckFilterTest {
+
+    private static final String USER_LOGIN_ID = GatewayHeaderEnum.USER_LOGIN_ID.getHeaderName();
+
+    private static final String IS_ANONYMOUS = GatewayHeaderEnum.IS_ANONYMOUS.getHeaderName();
+
+    private final AccountIdentityClient accountIdentityClient = mock(AccountIdentityClient.class);
+
+    private final RoutePermissionIndex routePermissionIndex = mock(RoutePermissionIndex.class);
+
+    private final AccountCheckFilter filter = new AccountCheckFilter();
+
+    @BeforeEach
+    void setUp() {
+        GatewayIdentityProperties properties = new GatewayIdentityProperties();
+        properties.getAnonymousCookie().setSecrets(List.of("test-anonymous-identity-secret-0123456789"));
+        SigningKeys signingKeys = new SigningKeys();
+        ReflectionTestUtils.setField(signingKeys, "gatewayIdentityProperties", properties);
+        ReflectionTestUtils.setField(signingKeys, "rateLimitProperties", new GatewayRateLimitProperties());
+        signingKeys.init();
+        ReflectionTestUtils.setField(filter, "signingKeys", signingKeys);
+        ReflectionTestUtils.setField(filter, "accountIdentityClient", accountIdentityClient);
+        ReflectionTestUtils.setField(filter, "verifiedTokenCache", new VerifiedTokenCache(properties));
+        ReflectionTestUtils.setField(filter, "gatewayIdentityProperties", properties);
+        ReflectionTestUtils.setField(filter, "routePermissionIndex", routePermissionIndex);
+        ReflectionTestUtils.setField(filter, "activeProfile", "dev");
+        ReflectionTestUtils.setField(filter, "cookieDomain", "");
+        when(routePermissionIndex.classify(eq("cart-provider"), any()))
+                .thenReturn(Mono.just(RoutePermissionIndex.ANONYMOUS));
+    }
+
+    @Test
+    void degradedAnonymousRequestDropsClientSuppliedUserId() {
+        // 身份服务降级放行时没有匿名 userId
+        when(accountIdentityClient.getOrCreateAnonymousId(anyString())).thenReturn(Mono.empty());
+
+        HttpHeaders forwarded = forward(spoofedRequest());
+
+        assertThat(forwarded.containsKey(USER_LOGIN_ID)).isFalse();
+        assertThat(forwarded.getFirst(IS_ANONYMOUS)).isEqualTo("true");
+        assertThat(forwarded.getFirst("X-Device-ID")).isEqualTo("device-1");
+    }
+
+    @Test
+    void anonymousRequestOverridesClientSuppliedUserId() {
+        when(accountIdentityClient.getOrCreateAnonymousId("device-1")).thenReturn(Mono.just(7L));
+
+        HttpHeaders forwarded = forward(spoofedRequest());
+
+        assertThat(forwarded.get(USER_LOGIN_ID)).containsExactly("7");
+        assertThat(forwarded.getFirst(IS_ANONYMOUS)).isEqualTo("true");
+    }
+
+    private MockServerHttpRequest spoofedRequest() {
+        return MockServerHttpRequest.get("/cart-provider/cart/add")
+                .header(USER_LOGIN_ID, "10001")
+                .header("X-Device-ID", "device-1")
+                .build();
+    }
+
+    /**
+     * 执行过滤器，返回 RequestHeaderMutationFilter 写入后转发给下游的请求头
+     */
+    private HttpHeaders forward(MockServerHttpRequest request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, Route.async()
+                .id("cart-provider")
+                .uri(URI.create("lb://cart-provider"))
+                .predicate(e -> true)
+                .build());
+        AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+        GatewayFilterChain chain = e -> {
+            forwarded.set(e);
+            return Mono.empty();
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(forwarded.get()).isNotNull();
+        return GatewayRequestContext.get(forwarded.get()).applyTo(forwarded.get()).getRequest().getHeaders();
+    }
+}
@@ -0,0 +1,80 @@
+package com.aiolos.octopus.gateway.filter;
+
+import com.aiolos.octopus.gateway.loadbalancer.InstanceLoadTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+class InstanceLoadFilterTest {
+
+    private final InstanceLoadTracker tracker = mock(InstanceLoadTracker.class);
+
+    private final InstanceLoadTracker.Stats stats = mock(InstanceLoadTracker.Stats.class);
+
+    private final ServiceInstance instance = new DefaultServiceInstance("cart-1", "cart-provider", "10.0.0.1", 8080, false);
+
+    private final InstanceLoadFilter filter = new InstanceLoadFilter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(filter, "instanceLoadTracker", tracker);
+        when(tracker.begin(instance)).thenReturn(stats);
+    }
+
+    @Test
+    void recordsTimeToUpstreamResponseHeaders() {
+        // 过滤链在收到上游响应头时完成
+        GatewayFilterChain upstream = exchange -> Mono.delay(Duration.ofMillis(30)).then();
+
+        filter.filter(exchange(), upstream).block();
+
+        verify(tracker).complete(eq(stats), longThat(nanos -> nanos >= TimeUnit.MILLISECONDS.toNanos(30)), eq(false));
+    }
+
+    @Test
+    void upstream5xxCountsAsFailure() {
+        MockServerWebExchange exchange = exchange();
+        GatewayFilterChain upstream = e -> {
+            e.getResponse().setStatusCode(HttpStatus.BAD_GATEWAY);
+            return Mono.empty();
+        };
+
+        filter.filter(exchange, upstream).block();
+
+        verify(tracker).complete(eq(stats), anyLong(), eq(true));
+    }
+
+    @Test
+    void cancelledRequestRecordsNoSample() {
+        GatewayFilterChain upstream = exchange -> Mono.never();
+
+        filter.filter(exchange(), upstream).timeout(Duration.ofMillis(20), Mono.empty()).block();
+
+        verify(tracker).complete(stats, -1, false);
+    }
+
+    private MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/cart-provider/cart/list"));
+        exchange.getAttributes().put(GATEWAY_LOADBALANCER_RESPONSE_ATTR, new DefaultResponse(instance));
+        return exchange;
+    }
+}
@@ -0,0 +1,122 @@
+package com.aiolos.octopus.gateway.filter;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import com.aiolos.octopus.gateway.config.SeckillActivityIndex;
+import com.aiolos.octopus.gateway.ratelimit.SeckillBuckets;
+import com.aiolos.octopus.gateway.ratelimit.SeckillWaitingRoom;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.distributed.AsyncBucketProxy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class TokenBucketRateLimitFilterTest {
+
+    private final SeckillWaitingRoom waitingRoom = mock(SeckillWaitingRoom.class);
+
+    private final SeckillBuckets seckillBuckets = mock(SeckillBuckets.class);
+
+    private final GatewayRateLimitProperties properties = new GatewayRateLimitProperties();
+
+    private final TokenBucketRateLimitFilter filter = new TokenBucketRateLimitFilter();
+
+    private final GatewayRateLimitProperties.Activity activity = new GatewayRateLimitProperties.Activity();
+
+    private final AtomicBoolean forwarded = new AtomicBoolean();
+
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.set(true);
+        return Mono.empty();
+    };
+
+    @BeforeEach
+    void setUp() {
+        activity.setId("spring-sale");
+        activity.setPath("/seckill/spring-sale");
+        activity.setQueueEnabled(true);
+        properties.getSeckill().setActivities(List.of(activity));
+        SeckillActivityIndex activityIndex = new SeckillActivityIndex();
+        ReflectionTestUtils.setField(activityIndex, "rateLimitProperties", properties);
+        activityIndex.init();
+        ReflectionTestUtils.setField(filter, "seckillActivityIndex", activityIndex);
+        ReflectionTestUtils.setField(filter, "seckillWaitingRoom", waitingRoom);
+        ReflectionTestUtils.setField(filter, "seckillBuckets", seckillBuckets);
+        ReflectionTestUtils.setField(filter, "rateLimitProperties", properties);
+        when(waitingRoom.enqueue(activity)).thenReturn(Mono.just(new SeckillWaitingRoom.Queued("ticket-9", 9)));
+    }
+
+    @Test
+    void newcomerQueuesBehindWaitersWithoutTakingTokens() {
+        when(waitingRoom.hasWaiters(activity)).thenReturn(true);
+
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/seckill/spring-sale/buy"));
+        filter.filter(exchange, chain).block();
+
+        assertThat(forwarded).isFalse();
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(exchange.getResponse().getHeaders().getFirst(SeckillWaitingRoom.TICKET_HEADER)).isEqualTo("ticket-9");
+        verifyNoInteractions(seckillBuckets);
+    }
+
+    @Test
+    void admittedTicketHolderPassesWhileOthersWait() {
+        when(waitingRoom.hasWaiters(activity)).thenReturn(true);
+        when(waitingRoom.claim(activity, "ticket-1")).thenReturn(Mono.just(SeckillWaitingRoom.CLAIMED));
+
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/seckill/spring-sale/buy")
+                .header(SeckillWaitingRoom.TICKET_HEADER, "ticket-1"));
+        filter.filter(exchange, chain).block();
+
+        assertThat(forwarded).isTrue();
+        verifyNoInteractions(seckillBuckets);
+    }
+
+    @Test
+    void emptyQueueConsumesTokenDirectly() {
+        when(waitingRoom.hasWaiters(activity)).thenReturn(false);
+        AsyncBucketProxy bucket = mock(AsyncBucketProxy.class);
+        when(bucket.tryConsumeAndReturnRemaining(1))
+                .thenReturn(CompletableFuture.completedFuture(ConsumptionProbe.consumed(10, 0)));
+        when(seckillBuckets.bucket(anyString(), any())).thenReturn(bucket);
+
+        filter.filter(exchange(MockServerHttpRequest.post("/seckill/spring-sale/buy")), chain).block();
+
+        assertThat(forwarded).isTrue();
+    }
+
+    @Test
+    void exhaustedTokensQueueWhenQueueEmpty() {
+        when(waitingRoom.hasWaiters(activity)).thenReturn(false);
+        activity.setBorrowAttempts(0);
+        AsyncBucketProxy bucket = mock(AsyncBucketProxy.class);
+        when(bucket.tryConsumeAndReturnRemaining(1))
+                .thenReturn(CompletableFuture.completedFuture(ConsumptionProbe.rejected(0, 1_000_000, 1_000_000)));
+        when(seckillBuckets.bucket(anyString(), any())).thenReturn(bucket);
+
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/seckill/spring-sale/buy"));
+        filter.filter(exchange, chain).block();
+
+        assertThat(forwarded).isFalse();
+        assertThat(exchange.getResponse().getHeaders().getFirst(SeckillWaitingRoom.TICKET_HEADER)).isEqualTo("ticket-9");
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        return MockServerWebExchange.from(request.build());
+    }
+}
@@ -0,0 +1,62 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientIpResolverTest {
+
+    /**
+     * 与 application-dev.yml / application-prod.yml 中的默认可信代理一致
+     */
+    private static final List<String> DEFAULT_TRUSTED_PROXIES =
+            List.of("10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", "127.0.0.0/8", "::1", "fc00::/7");
+
+    @Test
+    void resolvesClientBehindLoadBalancerWithDefaultProxies() {
+        ClientIpResolver resolver = resolver(DEFAULT_TRUSTED_PROXIES);
+
+        assertThat(resolver.resolve(exchange("10.0.3.7", "203.0.113.9"))).isEqualTo("ip:203.0.113.9");
+        // 客户端伪造的最左侧地址被忽略
+        assertThat(resolver.resolve(exchange("10.0.3.7", "6.6.6.6, 203.0.113.9"))).isEqualTo("ip:203.0.113.9");
+        // 多级内部代理
+        assertThat(resolver.resolve(exchange("10.0.3.7", "203.0.113.9, 172.16.0.4"))).isEqualTo("ip:203.0.113.9");
+    }
+
+    @Test
+    void ignoresForwardedHeaderFromUntrustedPeer() {
+        ClientIpResolver resolver = resolver(DEFAULT_TRUSTED_PROXIES);
+
+        assertThat(resolver.resolve(exchange("198.51.100.1", "203.0.113.9"))).isEqualTo("ip:198.51.100.1");
+    }
+
+    @Test
+    void emptyTrustedProxiesUsesPeerAddress() {
+        ClientIpResolver resolver = resolver(List.of());
+
+        assertThat(resolver.resolve(exchange("10.0.3.7", "203.0.113.9"))).isEqualTo("ip:10.0.3.7");
+    }
+
+    private static ClientIpResolver resolver(List<String> trustedProxies) {
+        GatewayRateLimitProperties properties = new GatewayRateLimitProperties();
+        properties.getClientIp().setTrustedProxies(trustedProxies);
+        ClientIpResolver resolver = new ClientIpResolver();
+        ReflectionTestUtils.setField(resolver, "rateLimitProperties", properties);
+        resolver.rebuild();
+        return resolver;
+    }
+
+    private static MockServerWebExchange exchange(String peer, String forwardedFor) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/cart-provider/cart/list")
+                .remoteAddress(new InetSocketAddress(peer, 52000))
+                .header("X-Forwarded-For", forwardedFor)
+                .build());
+    }
+}
@@ -0,0 +1,36 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceKeyResolverTest {
+
+    private final DeviceKeyResolver resolver = new DeviceKeyResolver();
+
+    @Test
+    void resolvesDeviceIdFromHeaderThenCookie() {
+        assertThat(resolve(MockServerHttpRequest.get("/").header("X-Device-ID", "3f2a-9C_01"))).isEqualTo("device:3f2a-9C_01");
+        assertThat(resolve(MockServerHttpRequest.get("/").cookie(new HttpCookie("device-id", "abc123")))).isEqualTo("device:abc123");
+    }
+
+    @Test
+    void rejectsDeviceIdThatWouldChangeHashTag() {
+        assertThat(resolve(MockServerHttpRequest.get("/").header("X-Device-ID", "a{b}c"))).isNull();
+        assertThat(resolve(MockServerHttpRequest.get("/").header("X-Device-ID", "a b"))).isNull();
+        assertThat(resolve(MockServerHttpRequest.get("/").header("X-Device-ID", "设备"))).isNull();
+    }
+
+    @Test
+    void rejectsOverlongDeviceId() {
+        assertThat(resolve(MockServerHttpRequest.get("/").header("X-Device-ID", "a".repeat(64)))).isEqualTo("device:" + "a".repeat(64));
+        assertThat(resolve(MockServerHttpRequest.get("/").header("X-Device-ID", "a".repeat(65)))).isNull();
+    }
+
+    private String resolve(MockServerHttpRequest.BaseBuilder<?> request) {
+        return resolver.resolve(MockServerWebExchange.from(request.build()));
+    }
+}
@@ -0,0 +1,63 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHitterSketchTest {
+
+    @Test
+    void collidingKeyIsOverestimatedButExactCountStaysLow() {
+        // 只有一个计数器，所有键都冲突
+        HeavyHitterSketch sketch = new HeavyHitterSketch(1, 1, 10);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.record("rate-limit:shop:*:ip:6.6.6.6");
+        }
+
+        long count = sketch.record("rate-limit:shop:*:ip:10.0.0.1");
+
+        assertThat(count).isEqualTo(1);
+        assertThat(sketch.top(1).get(0).estimate()).isGreaterThan(10_000);
+    }
+
+    @Test
+    void concurrentRecordsOfHotKeyAreNotLost() throws InterruptedException {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 4096, 100);
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    sketch.record("rate-limit:shop:/item/<id>");
+                }
+                done.countDown();
+            });
+        }
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        HeavyHitterSketch.Entry top = sketch.top(1).get(0);
+        assertThat(top.estimate()).isEqualTo((long) threads * perThread);
+        assertThat(top.count()).isEqualTo((long) threads * perThread);
+    }
+
+    @Test
+    void decayHalvesEstimateAndCount() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 4096, 100);
+        for (int i = 0; i < 100; i++) {
+            sketch.record("hot");
+        }
+        sketch.record("once");
+
+        sketch.decay();
+
+        assertThat(sketch.top(10)).containsExactly(new HeavyHitterSketch.Entry("hot", 50, 50));
+    }
+}
@@ -0,0 +1,134 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PermitLeaseTest {
+
+    private static final int CONCURRENCY = 64;
+
+    @Test
+    void waitersRenewAgainWhenGrantSmallerThanDemand() {
+        GlobalBucket bucket = new GlobalBucket(1_000, 3, Duration.ofMinutes(1));
+        PermitLease lease = new PermitLease();
+
+        List<Boolean> results = acquireConcurrently(lease, bucket.renewer());
+
+        // 全局余量充足时，每轮只租到 3 个许可也不能拒绝任何请求
+        assertThat(results).hasSize(CONCURRENCY).containsOnly(true);
+        assertThat(bucket.renewals.get()).isGreaterThanOrEqualTo(CONCURRENCY / 3);
+    }
+
+    @Test
+    void synchronousRenewalDoesNotOverflowStack() {
+        GlobalBucket bucket = new GlobalBucket(1_000, 3, Duration.ofMinutes(1));
+        PermitLease lease = new PermitLease();
+
+        // 续租在订阅线程上同步完成时，未抢到许可的请求重试不能重放已完成的续租结果
+        List<Boolean> results = acquireConcurrently(lease, bucket.synchronousRenewer());
+
+        assertThat(results).hasSize(CONCURRENCY).containsOnly(true);
+        assertThat(bucket.remaining.get()).isEqualTo(1_000 - bucket.renewals.get() * 3L);
+    }
+
+    @Test
+    void rejectsOnlyWhenGlobalBudgetExhausted() {
+        GlobalBucket bucket = new GlobalBucket(10, 3, Duration.ofMinutes(1));
+        PermitLease lease = new PermitLease();
+
+        List<Boolean> results = acquireConcurrently(lease, bucket.renewer());
+
+        assertThat(results.stream().filter(Boolean::booleanValue).count()).isEqualTo(10);
+        assertThat(bucket.remaining.get()).isZero();
+    }
+
+    @Test
+    void expiredLeaseReturnsUnusedPermits() throws InterruptedException {
+        GlobalBucket bucket = new GlobalBucket(10, 5, Duration.ofMillis(50));
+        PermitLease lease = new PermitLease();
+
+        assertThat(lease.acquire(bucket.renewer()).block()).isTrue();
+        Thread.sleep(100);
+        // 租约过期后再次续租，先归还上一租约剩余的 4 个许可
+        assertThat(lease.acquire(bucket.renewer()).block()).isTrue();
+        assertThat(bucket.returned.get()).isEqualTo(4);
+        assertThat(bucket.remaining.get()).isEqualTo(4);
+    }
+
+    @Test
+    void renewalErrorPropagatesToAllWaiters() {
+        PermitLease lease = new PermitLease();
+        LongFunction<Mono<PermitLease.Grant>> failing = unused -> Mono.delay(Duration.ofMillis(10))
+                .then(Mono.error(new IllegalStateException("redis down")));
+
+        List<String> errors = Flux.range(0, 8)
+                .flatMap(i -> lease.acquire(failing)
+                        .map(String::valueOf)
+                        .onErrorResume(e -> Mono.just(e.getMessage()))
+                        .subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(errors).hasSize(8).containsOnly("redis down");
+    }
+
+    private static List<Boolean> acquireConcurrently(PermitLease lease, LongFunction<Mono<PermitLease.Grant>> renewer) {
+        return Flux.range(0, CONCURRENCY)
+                .flatMap(i -> lease.acquire(renewer).subscribeOn(Schedulers.parallel()), CONCURRENCY)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+    }
+
+    /**
+     * 模拟 Redis 中的全局计数器，每次续租最多借出 leaseSize 个许可，有少量网络延迟
+     */
+    private static final class GlobalBucket {
+
+        private final AtomicLong remaining;
+
+        private final long leaseSize;
+
+        private final Duration ttl;
+
+        private final AtomicInteger renewals = new AtomicInteger();
+
+        private final AtomicLong returned = new AtomicLong();
+
+        private GlobalBucket(long capacity, long leaseSize, Duration ttl) {
+            this.remaining = new AtomicLong(capacity);
+            this.leaseSize = leaseSize;
+            this.ttl = ttl;
+        }
+
+        private LongFunction<Mono<PermitLease.Grant>> renewer() {
+            return unused -> Mono.delay(Duration.ofMillis(2)).map(tick -> borrow(unused));
+        }
+
+        private LongFunction<Mono<PermitLease.Grant>> synchronousRenewer() {
+            return unused -> Mono.fromSupplier(() -> borrow(unused));
+        }
+
+        private PermitLease.Grant borrow(long unused) {
+            renewals.incrementAndGet();
+            returned.addAndGet(unused);
+            remaining.addAndGet(unused);
+            long granted;
+            long current;
+            do {
+                current = remaining.get();
+                granted = Math.min(current, leaseSize);
+            } while (!remaining.compareAndSet(current, current - granted));
+            return new PermitLease.Grant(granted, ttl.toMillis());
+        }
+    }
+}
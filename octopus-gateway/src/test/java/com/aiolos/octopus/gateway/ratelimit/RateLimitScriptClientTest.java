@@ -0,0 +1,80 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
+import io.lettuce.core.codec.StringCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitScriptClientTest {
+
+    private final LettuceConnectionFactory connectionFactory = mock(LettuceConnectionFactory.class);
+
+    private final RateLimitScriptClient client = new RateLimitScriptClient();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void connectsThroughClusterClient() {
+        RedisClusterClient clusterClient = mock(RedisClusterClient.class);
+        StatefulRedisClusterConnection<String, String> connection = mock(StatefulRedisClusterConnection.class);
+        when(connection.async()).thenReturn(mock(RedisAdvancedClusterAsyncCommands.class));
+        when(clusterClient.connect(StringCodec.UTF8)).thenReturn(connection);
+        when(connectionFactory.getNativeClient()).thenReturn(clusterClient);
+
+        connect();
+
+        verify(connection).setAutoFlushCommands(false);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void connectsThroughStandaloneClient() {
+        RedisClient redisClient = mock(RedisClient.class);
+        StatefulRedisConnection<String, String> connection = mock(StatefulRedisConnection.class);
+        when(connection.async()).thenReturn(mock(RedisAsyncCommands.class));
+        when(redisClient.connect(StringCodec.UTF8)).thenReturn(connection);
+        when(connectionFactory.getNativeClient()).thenReturn(redisClient);
+
+        connect();
+
+        verify(connection).setAutoFlushCommands(false);
+    }
+
+    @Test
+    void failsFastOnUnknownClient() {
+        when(connectionFactory.getNativeClient()).thenReturn(mock(AbstractRedisClient.class));
+
+        assertThatThrownBy(this::connect)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("不支持的 Redis 客户端类型");
+    }
+
+    @Test
+    void derivedKeysShareSlotEvenWithBracesInKey() {
+        // 花括号替换后 hash tag 覆盖整个限流键，不会在键中的 } 处提前截断
+        List<String> keys = RateLimitScriptClient.hashTagged("rate-limit:cart:device:a{b}c", "lock", "counter");
+
+        assertThat(keys).containsExactly("{rate-limit:cart:device:a<b>c}:lock", "{rate-limit:cart:device:a<b>c}:counter");
+        assertThat(SlotHash.getSlot(keys.get(0))).isEqualTo(SlotHash.getSlot(keys.get(1)));
+    }
+
+    private void connect() {
+        ReflectionTestUtils.setField(client, "lettuceConnectionFactory", connectionFactory);
+        client.connect();
+    }
+}
@@ -0,0 +1,119 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.testcontainers.containers.GenericContainer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流 Lua 脚本基准测试，在 Testcontainers 启动的 Redis 中比较三种算法单次判定的延迟
+ * ping 为同一连接上的网络往返基线，各算法结果减去基线即为脚本本身的开销
+ * 需要 Docker 环境；在 IDE 中运行 main 方法，或 test-compile 后以测试类路径执行 org.openjdk.jmh.Main RateLimitScriptsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitScriptsBenchmark {
+
+    private static final Map<GatewayRateLimitProperties.Algorithm, String> SCRIPTS = Map.of(
+            GatewayRateLimitProperties.Algorithm.FIXED_WINDOW, "lua/rate_limit.lua",
+            GatewayRateLimitProperties.Algorithm.GCRA, "lua/rate_limit_gcra.lua",
+            GatewayRateLimitProperties.Algorithm.SLIDING_WINDOW, "lua/rate_limit_sliding.lua");
+
+    /**
+     * 轮询的客户端数，分摊到每个键上的请求速率远低于阈值，测量的都是放行路径
+     */
+    private static final int CLIENTS = 10_000;
+
+    private static final Map<GatewayRateLimitProperties.Algorithm, String[]> KEY_SUFFIXES = Map.of(
+            GatewayRateLimitProperties.Algorithm.FIXED_WINDOW, new String[]{"lock", "counter"},
+            GatewayRateLimitProperties.Algorithm.GCRA, new String[]{"gcra"},
+            GatewayRateLimitProperties.Algorithm.SLIDING_WINDOW, new String[]{"sliding"});
+
+    @Param({"FIXED_WINDOW", "GCRA", "SLIDING_WINDOW"})
+    private GatewayRateLimitProperties.Algorithm algorithm;
+
+    private GenericContainer<?> container;
+
+    private RedisClient client;
+
+    private StatefulRedisConnection<String, String> connection;
+
+    private RedisCommands<String, String> redis;
+
+    private String sha;
+
+    private String[][] keys;
+
+    private String[][] args;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        container = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+        container.start();
+        client = RedisClient.create("redis://" + container.getHost() + ":" + container.getMappedPort(6379));
+        connection = client.connect();
+        redis = connection.sync();
+        sha = redis.scriptLoad(new ClassPathResource(SCRIPTS.get(algorithm)).getContentAsString(StandardCharsets.UTF_8));
+        keys = new String[CLIENTS][];
+        args = new String[CLIENTS][];
+        for (int i = 0; i < CLIENTS; i++) {
+            String key = "rate-limit:bench:ip:10.0." + (i >> 8) + "." + (i & 0xff);
+            keys[i] = RateLimitScriptClient.hashTagged(key, KEY_SUFFIXES.get(algorithm)).toArray(new String[0]);
+            args[i] = new String[]{"1000", "1", "60", "0", key};
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        connection.close();
+        client.shutdown();
+        container.stop();
+    }
+
+    @Benchmark
+    public Long evaluate() {
+        int index = next;
+        next = (next + 1) % CLIENTS;
+        return redis.evalsha(sha, ScriptOutputType.INTEGER, keys[index], args[index]);
+    }
+
+    @Benchmark
+    public String ping() {
+        return redis.ping();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimitScriptsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,229 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 限流 Lua 脚本行为测试，在真实 Redis 中执行脚本
+ * 没有 Docker 环境时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RateLimitScriptsTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static RedisClient client;
+
+    private static StatefulRedisConnection<String, String> connection;
+
+    private static RedisCommands<String, String> redis;
+
+    private static String fixedWindow;
+
+    private static String gcra;
+
+    private static String sliding;
+
+    /**
+     * 各脚本 KEYS 的派生键后缀，与 RateLimitFilter 一致
+     */
+    private static final Map<String, String[]> KEY_SUFFIXES = new HashMap<>();
+
+    @BeforeAll
+    static void connect() throws IOException {
+        client = RedisClient.create("redis://" + REDIS.getHost() + ":" + REDIS.getMappedPort(6379));
+        connection = client.connect();
+        redis = connection.sync();
+        fixedWindow = script("lua/rate_limit.lua");
+        gcra = script("lua/rate_limit_gcra.lua");
+        sliding = script("lua/rate_limit_sliding.lua");
+        KEY_SUFFIXES.put(fixedWindow, new String[]{"lock", "counter"});
+        KEY_SUFFIXES.put(gcra, new String[]{"gcra"});
+        KEY_SUFFIXES.put(sliding, new String[]{"sliding"});
+    }
+
+    @AfterAll
+    static void close() {
+        if (connection != null) {
+            connection.close();
+            client.shutdown();
+        }
+    }
+
+    @BeforeEach
+    void flush() {
+        redis.flushall();
+    }
+
+    @Test
+    void fixedWindowBansAfterLimit() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(eval(fixedWindow, "fixed", 5, 10, 2, 0)).isZero();
+        }
+        assertThat(eval(fixedWindow, "fixed", 5, 10, 2, 0)).isEqualTo(2000);
+        // 封禁期内返回剩余封禁毫秒数
+        assertThat(eval(fixedWindow, "fixed", 5, 10, 2, 0)).isBetween(1L, 2000L);
+    }
+
+    @Test
+    void gcraAllowsBurstThenBans() {
+        // 1 秒内最多突发 5 个请求
+        for (int i = 0; i < 5; i++) {
+            assertThat(eval(gcra, "gcra", 5, 1, 2, 0)).isZero();
+        }
+        assertThat(eval(gcra, "gcra", 5, 1, 2, 0)).isEqualTo(2000);
+        assertThat(redis.get("{gcra}:gcra")).isEqualTo("ban");
+        assertThat(eval(gcra, "gcra", 5, 1, 2, 0)).isBetween(1L, 2000L);
+    }
+
+    @Test
+    void gcraPacedRequestsNeverBanned() throws InterruptedException {
+        // 间隔 100ms 的速率下，每 150ms 一个请求始终放行，即使总数超过 maxRequests
+        for (int i = 0; i < 15; i++) {
+            assertThat(eval(gcra, "paced", 10, 1, 2, 0)).isZero();
+            Thread.sleep(150);
+        }
+    }
+
+    @Test
+    void gcraKeyExpiresWithTheoreticalArrivalTime() {
+        eval(gcra, "ttl", 10, 1, 2, 0);
+        // 单个请求只占用一个间隔，键在 TAT 到达时过期
+        assertThat(redis.pttl("{ttl}:gcra")).isBetween(1L, 100L);
+    }
+
+    @Test
+    void gcraBanExpiresAndBroadcasts() throws InterruptedException {
+        BlockingQueue<String> messages = subscribeBans();
+        for (int i = 0; i < 2; i++) {
+            eval(gcra, "broadcast", 2, 1, 1, 1);
+        }
+        assertThat(eval(gcra, "broadcast", 2, 1, 1, 1)).isEqualTo(1000);
+        assertThat(messages.poll(2, TimeUnit.SECONDS)).isEqualTo("broadcast 1000");
+
+        Thread.sleep(1100);
+        assertThat(eval(gcra, "broadcast", 2, 1, 1, 1)).isZero();
+    }
+
+    @Test
+    void slidingWindowBansAfterLimit() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(eval(sliding, "sliding", 5, 60, 2, 0)).isZero();
+        }
+        assertThat(eval(sliding, "sliding", 5, 60, 2, 0)).isEqualTo(2000);
+        // 封禁后只保留封禁到期时间
+        assertThat(redis.hkeys("{sliding}:sliding")).containsExactly("b");
+        assertThat(eval(sliding, "sliding", 5, 60, 2, 0)).isBetween(1L, 2000L);
+    }
+
+    @Test
+    void slidingWindowWeightsPreviousWindowByOverlap() {
+        long windowMillis = 60_000;
+        long now = redisNowMillis();
+        long window = now / windowMillis;
+        long elapsed = now - window * windowMillis;
+        // 避免测试过程中跨越窗口边界
+        assumeTrue(elapsed < windowMillis - 5_000);
+        int maxRequests = 10;
+        int previous = 10;
+        redis.hset("{weighted}:sliding", Map.of("w", String.valueOf(window), "c", "0", "p", String.valueOf(previous)));
+
+        int allowed = 0;
+        while (allowed <= maxRequests && eval(sliding, "weighted", maxRequests, 60, 2, 0) == 0) {
+            allowed++;
+        }
+
+        // 上一窗口的计数按剩余重叠比例折算
+        double carried = previous * (windowMillis - elapsed) / (double) windowMillis;
+        int expected = (int) Math.floor(maxRequests - carried);
+        assertThat(allowed).isBetween(expected - 1, expected + 1);
+    }
+
+    @Test
+    void slidingWindowIgnoresStaleWindows() {
+        long window = redisNowMillis() / 60_000;
+        redis.hset("{stale}:sliding", Map.of("w", String.valueOf(window - 2), "c", "10", "p", "10"));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(eval(sliding, "stale", 5, 60, 2, 0)).isZero();
+        }
+        assertThat(redis.hget("{stale}:sliding", "p")).isEqualTo("0");
+    }
+
+    @Test
+    void waitingRoomDropsEntriesWhoseTicketsExpired() throws IOException {
+        String enqueue = script("lua/waiting_room_enqueue.lua");
+        String advance = script("lua/waiting_room_advance.lua");
+        String[] enqueueKeys = {"seckill:queue:{sale}:tail", "seckill:queue:{sale}", "seckill:queue:{sale}:head"};
+        String[] advanceKeys = {"seckill:queue:{sale}:head", "seckill:queue:{sale}:tail", "seckill:queue:{sale}"};
+        long now = System.currentTimeMillis();
+        redis.eval(enqueue, ScriptOutputType.MULTI, enqueueKeys, "300", String.valueOf(now - 1_000));
+        redis.eval(enqueue, ScriptOutputType.MULTI, enqueueKeys, "300", String.valueOf(now - 1));
+        redis.eval(enqueue, ScriptOutputType.MULTI, enqueueKeys, "300", String.valueOf(now + 300_000));
+
+        // 放行前两个后无人使用票据，票据过期后不再占用有序集合
+        List<Object> result = redis.eval(advance, ScriptOutputType.MULTI, advanceKeys, "2", "300", String.valueOf(now));
+
+        assertThat(result).containsExactly(2L, 2L, 3L);
+        assertThat(redis.zrange("seckill:queue:{sale}", 0, -1)).containsExactly("3");
+    }
+
+    private static long eval(String script, String key, Object... args) {
+        String[] keys = RateLimitScriptClient.hashTagged(key, KEY_SUFFIXES.get(script)).toArray(new String[0]);
+        // 限流键追加在参数末尾，供封禁广播使用
+        String[] values = new String[args.length + 1];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = String.valueOf(args[i]);
+        }
+        values[args.length] = key;
+        Long result = redis.eval(script, ScriptOutputType.INTEGER, keys, values);
+        return result;
+    }
+
+    private static long redisNowMillis() {
+        List<String> time = redis.time();
+        return Long.parseLong(time.get(0)) * 1000 + Long.parseLong(time.get(1)) / 1000;
+    }
+
+    private static BlockingQueue<String> subscribeBans() {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        StatefulRedisPubSubConnection<String, String> pubSub = client.connectPubSub();
+        pubSub.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String message) {
+                messages.add(message);
+            }
+        });
+        pubSub.sync().subscribe("rate-limit:ban");
+        return messages;
+    }
+
+    private static String script(String location) throws IOException {
+        return new ClassPathResource(location).getContentAsString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,147 @@
+package com.aiolos.octopus.gateway.ratelimit;
+
+import com.aiolos.octopus.gateway.config.GatewayRateLimitProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Redis 延迟注入测试
+ * 模拟 Redis 变慢或无响应，验证限流判定的 p99 延迟始终受超时约束，熔断后降到本地限流的开销，Redis 恢复后熔断器关闭
+ */
+class RedisLimiterGuardTest {
+
+    private static final int REQUESTS = 400;
+
+    private static final int CONCURRENCY = 32;
+
+    /**
+     * 调度抖动余量，CI 机器上 Reactor 定时器与线程切换的开销
+     */
+    private static final long SLACK_MILLIS = 100;
+
+    private final GatewayRateLimitProperties properties = new GatewayRateLimitProperties();
+
+    private LocalFallbackLimiter fallbackLimiter;
+
+    @BeforeEach
+    void setUp() {
+        DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+        List<ServiceInstance> gateways = Collections.nCopies(4, mock(ServiceInstance.class));
+        when(discoveryClient.getInstances("octopus-gateway")).thenReturn(gateways);
+        fallbackLimiter = new LocalFallbackLimiter();
+        ReflectionTestUtils.setField(fallbackLimiter, "gatewayServiceId", "octopus-gateway");
+        ReflectionTestUtils.setField(fallbackLimiter, "discoveryClient", discoveryClient);
+        fallbackLimiter.init();
+    }
+
+    @Test
+    void unresponsiveRedisIsBoundedByTimeoutThenShortCircuited() {
+        RedisLimiterGuard guard = new RedisLimiterGuard(properties);
+        long timeoutMillis = properties.getCircuitBreaker().getTimeoutMillis();
+
+        long[] degraded = measure(guard, () -> Mono.delay(Duration.ofSeconds(2)).thenReturn(0L));
+
+        assertThat(percentile(degraded, 99)).isLessThan(timeoutMillis + SLACK_MILLIS);
+        // 熔断前的请求也最多等待一个超时
+        assertThat(degraded[degraded.length - 1]).isLessThan(timeoutMillis + SLACK_MILLIS);
+        assertThat(guard.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // 熔断后不再等待超时，直接走本地限流
+        long[] open = measure(guard, () -> Mono.delay(Duration.ofSeconds(2)).thenReturn(0L));
+        assertThat(percentile(open, 99)).isLessThan(timeoutMillis);
+    }
+
+    @Test
+    void slowRedisTripsSlowCallRate() {
+        properties.getCircuitBreaker().setSlowCallDurationMillis(10);
+        RedisLimiterGuard guard = new RedisLimiterGuard(properties);
+
+        // 每次调用 30ms，低于超时但超过慢调用阈值
+        long[] slow = measure(guard, () -> Mono.delay(Duration.ofMillis(30)).thenReturn(0L));
+
+        assertThat(percentile(slow, 99)).isLessThan(30 + SLACK_MILLIS);
+        assertThat(guard.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void recoversAfterRedisComesBack() throws InterruptedException {
+        properties.getCircuitBreaker().setWaitInOpenStateMillis(200);
+        RedisLimiterGuard guard = new RedisLimiterGuard(properties);
+
+        measure(guard, () -> Mono.error(new IllegalStateException("redis down")));
+        assertThat(guard.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        long[] healthy = measure(guard, () -> Mono.just(0L));
+
+        assertThat(guard.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(percentile(healthy, 99)).isLessThan(SLACK_MILLIS);
+    }
+
+    @Test
+    void openBreakerRejectsWithoutCallingRedis() {
+        RedisLimiterGuard guard = new RedisLimiterGuard(properties);
+        measure(guard, () -> Mono.error(new IllegalStateException("redis down")));
+        assertThat(guard.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // 短路与 Redis 自身的失败可以区分，RateLimitFilter 据此只对后者记录错误日志
+        StepVerifier.create(guard.protect(Mono.just(0L)))
+                .expectErrorMatches(RedisLimiterGuard::isShortCircuited)
+                .verify();
+        assertThat(RedisLimiterGuard.isShortCircuited(new IllegalStateException("redis down"))).isFalse();
+    }
+
+    @Test
+    void fallbackSplitsLimitAcrossGatewayInstances() {
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            if (fallbackLimiter.tryAcquire("rate-limit:cart:ip:1.2.3.4", 100, 3600)) {
+                allowed++;
+            }
+        }
+
+        assertThat(fallbackLimiter.getInstanceCount()).isEqualTo(4);
+        assertThat(allowed).isEqualTo(25);
+    }
+
+    /**
+     * 按 RateLimitFilter 的方式执行限流判定：Redis 调用经熔断器包装，失败时切换到本地限流
+     *
+     * @return 每次判定的耗时（毫秒），升序
+     */
+    private long[] measure(RedisLimiterGuard guard, Supplier<Mono<Long>> redis) {
+        List<Long> latencies = Flux.range(0, REQUESTS)
+                .flatMap(i -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return guard.protect(redis.get())
+                            .onErrorResume(e -> Mono.fromSupplier(() ->
+                                    fallbackLimiter.tryAcquire("rate-limit:cart:ip:" + i, 100, 1) ? 0L : 1L))
+                            .map(result -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }), CONCURRENCY)
+                .collectSortedList()
+                .block(Duration.ofSeconds(30));
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,128 @@
+package com.aiolos.octopus.gateway.rpc;
+
+import com.aiolos.badger.identitycore.api.AccountTokenApi;
+import com.aiolos.badger.identitycore.dto.AccountDTO;
+import com.aiolos.octopus.gateway.cache.VerifiedTokenCache;
+import com.aiolos.octopus.gateway.config.GatewayIdentityProperties;
+import org.apache.dubbo.rpc.RpcContext;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 身份 RPC 在事件循环线程上调用时不阻塞
+ * 模拟 Dubbo 异步代理：接口方法立即返回 null，结果通过 RpcContext 中的 Future 在 500ms 后完成
+ * 订阅放在 Reactor 的非阻塞线程上，BlockHound 检测到任何阻塞调用都会让测试失败
+ */
+class AccountIdentityClientTest {
+
+    private static final long RPC_DELAY_MILLIS = 500;
+
+    private final GatewayIdentityProperties properties = new GatewayIdentityProperties();
+
+    private final AccountTokenApi accountTokenApi = mock(AccountTokenApi.class);
+
+    private AccountIdentityClient client;
+
+    @BeforeAll
+    static void installBlockHound() {
+        // 降级日志写控制台属于测试环境的阻塞 IO，放行日志输出，其余阻塞调用仍会报错
+        BlockHound.install(builder -> builder.allowBlockingCallsInside("ch.qos.logback.classic.Logger", "callAppenders"));
+    }
+
+    @BeforeEach
+    void setUp() {
+        AccountDTO account = mock(AccountDTO.class);
+        when(account.getUserId()).thenReturn(42L);
+        when(accountTokenApi.getUserByToken(anyString())).thenAnswer(invocation -> {
+            RpcContext.getContext().setFuture(delayed(account));
+            return null;
+        });
+        when(accountTokenApi.getOrCreateAnonymousId(anyString())).thenAnswer(invocation -> {
+            RpcContext.getContext().setFuture(delayed(7L));
+            return null;
+        });
+
+        client = new AccountIdentityClient();
+        ReflectionTestUtils.setField(client, "accountTokenApi", accountTokenApi);
+        ReflectionTestUtils.setField(client, "gatewayIdentityProperties", properties);
+        ReflectionTestUtils.setField(client, "verifiedTokenCache", new VerifiedTokenCache(properties));
+    }
+
+    @Test
+    void blockHoundDetectsBlockingOnNonBlockingThread() {
+        // 确认 BlockHound 已生效，否则下面的用例没有意义
+        StepVerifier.create(Mono.fromCallable(() -> {
+                    Thread.sleep(1);
+                    return 1;
+                }).subscribeOn(Schedulers.parallel()))
+                .expectError(BlockingOperationError.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void slowRpcDoesNotBlockEventLoop() {
+        properties.getRpc().setTimeoutMillis(2000);
+
+        StepVerifier.create(client.getUserIdByToken("token").subscribeOn(Schedulers.parallel()))
+                .expectNext(42L)
+                .verifyComplete();
+        StepVerifier.create(client.getOrCreateAnonymousId("device").subscribeOn(Schedulers.parallel()))
+                .expectNext(7L)
+                .verifyComplete();
+    }
+
+    @Test
+    void timeoutDegradesToAnonymousWhenFailOpen() {
+        properties.getRpc().setTimeoutMillis(100);
+        properties.getRpc().setDegradePolicy(GatewayIdentityProperties.DegradePolicy.FAIL_OPEN);
+
+        StepVerifier.create(client.getUserIdByToken("token").subscribeOn(Schedulers.parallel()))
+                .expectComplete()
+                .verify(Duration.ofMillis(RPC_DELAY_MILLIS));
+    }
+
+    @Test
+    void timeoutRejectsWhenFailClosed() {
+        properties.getRpc().setTimeoutMillis(100);
+        properties.getRpc().setDegradePolicy(GatewayIdentityProperties.DegradePolicy.FAIL_CLOSED);
+
+        StepVerifier.create(client.getUserIdByToken("token").subscribeOn(Schedulers.parallel()))
+                .expectError(IdentityUnavailableException.class)
+                .verify(Duration.ofMillis(RPC_DELAY_MILLIS));
+    }
+
+    @Test
+    void bulkheadRejectsBeyondMaxInFlight() {
+        properties.getRpc().setTimeoutMillis(2000);
+        properties.getRpc().setMaxInFlight(1);
+        properties.getRpc().setDegradePolicy(GatewayIdentityProperties.DegradePolicy.FAIL_CLOSED);
+
+        Mono<Long> first = client.getUserIdByToken("first").subscribeOn(Schedulers.parallel());
+        Mono<Long> second = client.getUserIdByToken("second")
+                .delaySubscription(Duration.ofMillis(50))
+                .subscribeOn(Schedulers.parallel());
+        StepVerifier.create(Mono.zipDelayError(first, second.onErrorReturn(IdentityUnavailableException.class, -1L)))
+                .expectNextMatches(result -> result.getT1() == 42L && result.getT2() == -1L)
+                .verifyComplete();
+    }
+
+    private static <T> CompletableFuture<T> delayed(T value) {
+        return CompletableFuture.supplyAsync(() -> value,
+                CompletableFuture.delayedExecutor(RPC_DELAY_MILLIS, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,58 @@
+package com.aiolos.octopus.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnonymousIdentityUtilTest {
+
+    private static final String OLD_SECRET = "old-anonymous-identity-secret-0123456789";
+
+    private static final String NEW_SECRET = "new-anonymous-identity-secret-0123456789";
+
+    private final long expireAt = System.currentTimeMillis() + 60_000;
+
+    @Test
+    void signedIdentityRoundTrips() {
+        HmacKeyRing keys = HmacKeyRing.of(List.of(NEW_SECRET));
+
+        AnonymousIdentityUtil.AnonymousIdentity identity =
+                AnonymousIdentityUtil.verify(keys, AnonymousIdentityUtil.sign(keys, "device-1", 7L, expireAt));
+
+        assertThat(identity).isEqualTo(new AnonymousIdentityUtil.AnonymousIdentity("device-1", 7L, expireAt));
+    }
+
+    @Test
+    void rotationKeepsAcceptingOldKeyAndSignsWithNewKey() {
+        HmacKeyRing before = HmacKeyRing.of(List.of(OLD_SECRET));
+        HmacKeyRing rotated = HmacKeyRing.of(List.of(NEW_SECRET, OLD_SECRET));
+        HmacKeyRing retired = HmacKeyRing.of(List.of(NEW_SECRET));
+
+        String issuedBefore = AnonymousIdentityUtil.sign(before, "device-1", 7L, expireAt);
+        String issuedAfter = AnonymousIdentityUtil.sign(rotated, "device-1", 7L, expireAt);
+
+        assertThat(AnonymousIdentityUtil.verify(rotated, issuedBefore)).isNotNull();
+        assertThat(AnonymousIdentityUtil.verify(retired, issuedAfter)).isNotNull();
+        assertThat(AnonymousIdentityUtil.verify(retired, issuedBefore)).isNull();
+    }
+
+    @Test
+    void rejectsForgedOrTamperedIdentity() {
+        HmacKeyRing keys = HmacKeyRing.of(List.of(NEW_SECRET));
+        HmacKeyRing attacker = HmacKeyRing.of(List.of("attacker-guessed-secret-0123456789abcdef"));
+        String genuine = AnonymousIdentityUtil.sign(keys, "device-1", 7L, expireAt);
+
+        assertThat(AnonymousIdentityUtil.verify(keys, AnonymousIdentityUtil.sign(attacker, "device-1", 1L, expireAt))).isNull();
+        assertThat(AnonymousIdentityUtil.verify(keys, genuine.replace(".7.", ".1."))).isNull();
+        assertThat(AnonymousIdentityUtil.verify(keys, AnonymousIdentityUtil.sign(keys, "device-1", 7L, 1L))).isNull();
+    }
+
+    @Test
+    void rejectsMissingOrShortSecrets() {
+        assertThatThrownBy(() -> HmacKeyRing.of(List.of())).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HmacKeyRing.of(List.of("too-short"))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
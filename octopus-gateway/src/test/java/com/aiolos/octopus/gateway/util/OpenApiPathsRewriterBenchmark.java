@@ -0,0 +1,134 @@
+package com.aiolos.octopus.gateway.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * api-docs 改写基准测试：流式改写与原先读成 JSON 树后重建 paths 的实现对比
+ * 文档按 paths 数量生成，2000 / 8000 个路径约 1.3MB / 5MB，输入按 Netty 默认的 8KB 分块
+ * 配合 GC profiler 对比 gc.alloc.rate.norm（每次改写的分配字节数）与平均耗时
+ * 在 IDE 中运行 main 方法，或 test-compile 后以测试类路径执行 org.openjdk.jmh.Main OpenApiPathsRewriterBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class OpenApiPathsRewriterBenchmark {
+
+    private static final String PREFIX = "/cart-provider";
+
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"2000", "8000"})
+    public int pathCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] document;
+
+    private List<byte[]> chunks;
+
+    @Setup
+    public void setUp() {
+        document = generate(pathCount);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < document.length; i += CHUNK_SIZE) {
+            chunks.add(Arrays.copyOfRange(document, i, Math.min(document.length, i + CHUNK_SIZE)));
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws IOException {
+        OpenApiPathsRewriter rewriter = new OpenApiPathsRewriter(objectMapper.getFactory(), PREFIX);
+        for (byte[] chunk : chunks) {
+            blackhole.consume(rewriter.feed(chunk));
+        }
+        blackhole.consume(rewriter.finish());
+    }
+
+    /**
+     * 原实现：聚合整个响应体，转成字符串后读成 JSON 树，重建 paths 对象再整体序列化
+     */
+    @Benchmark
+    public byte[] legacyTree() throws IOException {
+        byte[] content = new byte[document.length];
+        System.arraycopy(document, 0, content, 0, document.length);
+        JsonNode rootNode = objectMapper.readTree(new String(content, StandardCharsets.UTF_8));
+        if (rootNode.has("paths")) {
+            ObjectNode modifiedPaths = objectMapper.createObjectNode();
+            rootNode.get("paths").fields().forEachRemaining(entry -> modifiedPaths.set(PREFIX + entry.getKey(), entry.getValue()));
+            ((ObjectNode) rootNode).set("paths", modifiedPaths);
+        }
+        return objectMapper.writeValueAsBytes(rootNode);
+    }
+
+    /**
+     * 生成接近真实服务的文档：每个路径带 get/post 两个操作、参数、请求体与响应引用，并附带组件定义
+     */
+    static byte[] generate(int pathCount) {
+        StringBuilder json = new StringBuilder(pathCount * 800);
+        json.append("{\"openapi\":\"3.0.1\",\"info\":{\"title\":\"购物车服务\",\"version\":\"1.0\"},\"paths\":{");
+        for (int i = 0; i < pathCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"/cart/item").append(i).append("/{id}\":{")
+                    .append("\"get\":{\"tags\":[\"购物车\"],\"summary\":\"查询购物车条目 ").append(i)
+                    .append("\",\"operationId\":\"getItem").append(i)
+                    .append("\",\"parameters\":[{\"name\":\"id\",\"in\":\"path\",\"required\":true,\"schema\":{\"type\":\"integer\",\"format\":\"int64\"}}],")
+                    .append("\"responses\":{\"200\":{\"description\":\"OK\",\"content\":{\"application/json\":{\"schema\":{\"$ref\":\"#/components/schemas/Item")
+                    .append(i % 50).append("\"}}}}}},")
+                    .append("\"post\":{\"tags\":[\"购物车\"],\"summary\":\"更新购物车条目 ").append(i)
+                    .append("\",\"operationId\":\"updateItem").append(i)
+                    .append("\",\"requestBody\":{\"content\":{\"application/json\":{\"schema\":{\"$ref\":\"#/components/schemas/Item")
+                    .append(i % 50).append("\"}}},\"required\":true},")
+                    .append("\"responses\":{\"200\":{\"description\":\"OK\",\"content\":{\"*/*\":{\"schema\":{\"type\":\"boolean\"}}}}}}}");
+        }
+        json.append("},\"components\":{\"schemas\":{");
+        for (int i = 0; i < 50; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"Item").append(i).append("\":{\"type\":\"object\",\"properties\":{")
+                    .append("\"id\":{\"type\":\"integer\",\"format\":\"int64\"},")
+                    .append("\"skuId\":{\"type\":\"integer\",\"format\":\"int64\"},")
+                    .append("\"count\":{\"type\":\"integer\",\"format\":\"int32\"},")
+                    .append("\"title\":{\"type\":\"string\",\"description\":\"商品标题\"}}}");
+        }
+        json.append("}}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OpenApiPathsRewriterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,126 @@
+package com.aiolos.octopus.gateway.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenApiPathsRewriterTest {
+
+    private static final String PREFIX = "/cart-provider";
+
+    /**
+     * 含中文（多字节 UTF-8）、非根对象中的 paths 键、路径项内部的 paths 键以及值为 "paths" 的字符串
+     */
+    private static final String DOC = """
+            {"openapi":"3.0.1",
+             "info":{"title":"购物车服务","description":"说明里出现 \\"paths\\" 字样"},
+             "components":{"schemas":{"Tree":{"properties":{"paths":{"type":"array","items":{"type":"string"}}}}}},
+             "paths":{
+               "/cart/add":{"post":{"summary":"加入购物车","x-meta":{"paths":{"/inner":1}}}},
+               "/cart/list":{"get":{"parameters":[{"name":"paths","in":"query"}]}}
+             },
+             "tags":[{"name":"paths"}]}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void prefixesOnlyRootPathKeys() throws IOException {
+        JsonNode rewritten = objectMapper.readTree(rewrite(bytes(DOC), List.of(bytes(DOC))));
+
+        assertThat(rewritten.get("paths").fieldNames()).toIterable()
+                .containsExactly(PREFIX + "/cart/add", PREFIX + "/cart/list");
+        // 嵌套的 paths 键保持原样
+        assertThat(rewritten.at("/paths/" + escape(PREFIX + "/cart/add") + "/post/x-meta/paths").has("/inner")).isTrue();
+        assertThat(rewritten.at("/components/schemas/Tree/properties").has("paths")).isTrue();
+        assertThat(rewritten.at("/tags/0/name").asText()).isEqualTo("paths");
+        assertThat(rewritten.at("/info/title").asText()).isEqualTo("购物车服务");
+        assertThat(rewritten).isEqualTo(legacyRewrite(bytes(DOC)));
+    }
+
+    @Test
+    void sameResultForEveryChunkSize() throws IOException {
+        byte[] doc = bytes(DOC);
+        JsonNode expected = legacyRewrite(doc);
+
+        for (int size = 1; size <= doc.length; size++) {
+            assertThat(objectMapper.readTree(rewrite(doc, chunks(doc, size)))).as("chunk size %d", size).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void sameResultForEverySplitPoint() throws IOException {
+        // 覆盖在多字节字符、转义序列、键名和数字中间断开的情况，中间夹一个空块
+        byte[] doc = bytes(DOC);
+        JsonNode expected = legacyRewrite(doc);
+
+        for (int split = 1; split < doc.length; split++) {
+            List<byte[]> chunks = List.of(Arrays.copyOfRange(doc, 0, split), new byte[0], Arrays.copyOfRange(doc, split, doc.length));
+            assertThat(objectMapper.readTree(rewrite(doc, chunks))).as("split at %d", split).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void leavesNonObjectPathsUntouched() throws IOException {
+        byte[] doc = bytes("{\"paths\":[\"/a\",{\"/b\":1}],\"x\":{\"paths\":{\"/c\":1}}}");
+
+        assertThat(objectMapper.readTree(rewrite(doc, List.of(doc)))).isEqualTo(objectMapper.readTree(doc));
+    }
+
+    @Test
+    void documentWithoutPathsIsCopied() throws IOException {
+        byte[] doc = bytes("{\"openapi\":\"3.0.1\",\"info\":{\"title\":\"t\",\"version\":\"1\"}}");
+
+        assertThat(objectMapper.readTree(rewrite(doc, List.of(doc)))).isEqualTo(objectMapper.readTree(doc));
+    }
+
+    private byte[] rewrite(byte[] doc, List<byte[]> chunks) throws IOException {
+        OpenApiPathsRewriter rewriter = new OpenApiPathsRewriter(objectMapper.getFactory(), PREFIX);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(doc.length + 256);
+        for (byte[] chunk : chunks) {
+            output.write(rewriter.feed(chunk));
+        }
+        output.write(rewriter.finish());
+        return output.toByteArray();
+    }
+
+    /**
+     * 改为流式改写之前的实现：读成 JSON 树后重建 paths 对象
+     */
+    private JsonNode legacyRewrite(byte[] doc) throws IOException {
+        JsonNode root = objectMapper.readTree(doc);
+        JsonNode paths = root.get("paths");
+        if (paths != null && paths.isObject()) {
+            ObjectNode prefixed = objectMapper.createObjectNode();
+            paths.fields().forEachRemaining(entry -> prefixed.set(PREFIX + entry.getKey(), entry.getValue()));
+            ((ObjectNode) root).set("paths", prefixed);
+        }
+        return root;
+    }
+
+    private static List<byte[]> chunks(byte[] doc, int size) {
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < doc.length; i += size) {
+            chunks.add(Arrays.copyOfRange(doc, i, Math.min(doc.length, i + size)));
+        }
+        return chunks;
+    }
+
+    private static String escape(String pointerToken) {
+        return pointerToken.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,48 @@
+package com.aiolos.octopus.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueueTicketUtilTest {
+
+    private static final String OLD_SECRET = "old-seckill-queue-ticket-secret-0123456789";
+
+    private static final String NEW_SECRET = "new-seckill-queue-ticket-secret-0123456789";
+
+    private final long expireAt = System.currentTimeMillis() + 60_000;
+
+    @Test
+    void signedTicketRoundTrips() {
+        HmacKeyRing keys = HmacKeyRing.of(List.of(NEW_SECRET));
+
+        QueueTicketUtil.QueueTicket ticket = QueueTicketUtil.verify(keys, QueueTicketUtil.sign(keys, "spring-sale", 42L, expireAt));
+
+        assertThat(ticket).isEqualTo(new QueueTicketUtil.QueueTicket("spring-sale", 42L, expireAt));
+    }
+
+    @Test
+    void rotationKeepsAcceptingOldKey() {
+        HmacKeyRing before = HmacKeyRing.of(List.of(OLD_SECRET));
+        HmacKeyRing rotated = HmacKeyRing.of(List.of(NEW_SECRET, OLD_SECRET));
+        HmacKeyRing retired = HmacKeyRing.of(List.of(NEW_SECRET));
+
+        String issuedBefore = QueueTicketUtil.sign(before, "spring-sale", 42L, expireAt);
+
+        assertThat(QueueTicketUtil.verify(rotated, issuedBefore)).isNotNull();
+        assertThat(QueueTicketUtil.verify(retired, QueueTicketUtil.sign(rotated, "spring-sale", 42L, expireAt))).isNotNull();
+        assertThat(QueueTicketUtil.verify(retired, issuedBefore)).isNull();
+    }
+
+    @Test
+    void rejectsJumpedSequenceOrExpiredTicket() {
+        HmacKeyRing keys = HmacKeyRing.of(List.of(NEW_SECRET));
+        String genuine = QueueTicketUtil.sign(keys, "spring-sale", 42L, expireAt);
+
+        assertThat(QueueTicketUtil.verify(keys, genuine.replace(".42.", ".1."))).isNull();
+        assertThat(QueueTicketUtil.verify(keys, QueueTicketUtil.sign(keys, "spring-sale", 42L, 1L))).isNull();
+        assertThat(QueueTicketUtil.verify(keys, "garbage")).isNull();
+    }
+}
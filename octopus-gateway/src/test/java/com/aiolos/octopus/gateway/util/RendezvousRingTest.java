@@ -0,0 +1,124 @@
+package com.aiolos.octopus.gateway.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RendezvousRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void addingNodeOnlyMovesKeysToNewNode() {
+        for (int n : new int[]{4, 10, 32}) {
+            List<String> nodes = instances(n);
+            RendezvousRing<String> before = RendezvousRing.of(nodes, node -> node);
+            List<String> grown = new ArrayList<>(nodes);
+            String added = instance(n);
+            grown.add(added);
+            RendezvousRing<String> after = RendezvousRing.of(grown, node -> node);
+
+            int moved = 0;
+            for (int k = 0; k < KEYS; k++) {
+                long key = key(k);
+                String target = after.select(key);
+                if (!target.equals(before.select(key))) {
+                    moved++;
+                    // 迁移的键只能落到新节点上
+                    assertThat(target).isEqualTo(added);
+                }
+            }
+            assertThat(moved / (double) KEYS).isCloseTo(1.0 / (n + 1), within(0.01));
+        }
+    }
+
+    @Test
+    void removingNodeOnlyMovesItsOwnKeys() {
+        List<String> nodes = instances(8);
+        RendezvousRing<String> before = RendezvousRing.of(nodes, node -> node);
+        String removed = nodes.get(3);
+        List<String> shrunk = new ArrayList<>(nodes);
+        shrunk.remove(removed);
+        RendezvousRing<String> after = RendezvousRing.of(shrunk, node -> node);
+
+        for (int k = 0; k < KEYS; k++) {
+            long key = key(k);
+            String owner = before.select(key);
+            if (!owner.equals(removed)) {
+                assertThat(after.select(key)).isEqualTo(owner);
+            }
+        }
+    }
+
+    @Test
+    void selectionIndependentOfNodeOrder() {
+        List<String> nodes = instances(6);
+        List<String> reversed = new ArrayList<>(nodes);
+        Collections.reverse(reversed);
+        RendezvousRing<String> ring = RendezvousRing.of(nodes, node -> node);
+        RendezvousRing<String> reversedRing = RendezvousRing.of(reversed, node -> node);
+
+        for (int k = 0; k < 10_000; k++) {
+            assertThat(reversedRing.select(key(k))).isEqualTo(ring.select(key(k)));
+        }
+    }
+
+    @Test
+    void equalWeightsSpreadEvenly() {
+        Map<String, Integer> counts = distribute(RendezvousRing.of(instances(5), node -> node));
+
+        assertThat(counts).hasSize(5);
+        counts.values().forEach(count -> assertThat(count / (double) KEYS).isCloseTo(0.2, within(0.01)));
+    }
+
+    @Test
+    void weightedShareFollowsWeights() {
+        Map<String, Double> weights = Map.of("a", 1.0, "b", 2.0, "c", 5.0, "d", 0.0);
+        RendezvousRing<String> ring = RendezvousRing.of(List.of("a", "b", "c", "d"), node -> node, weights::get);
+
+        Map<String, Integer> counts = distribute(ring);
+
+        assertThat(ring.size()).isEqualTo(3);
+        assertThat(counts).doesNotContainKey("d");
+        assertThat(counts.get("a") / (double) KEYS).isCloseTo(0.125, within(0.01));
+        assertThat(counts.get("b") / (double) KEYS).isCloseTo(0.25, within(0.01));
+        assertThat(counts.get("c") / (double) KEYS).isCloseTo(0.625, within(0.01));
+    }
+
+    @Test
+    void emptyRingSelectsNothing() {
+        assertThat(RendezvousRing.of(List.<String>of(), node -> node).select(1L)).isNull();
+        assertThat(RendezvousRing.of(List.of("a"), node -> node).select(1L)).isEqualTo("a");
+    }
+
+    private static Map<String, Integer> distribute(RendezvousRing<String> ring) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            counts.merge(ring.select(key(k)), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static List<String> instances(int n) {
+        List<String> nodes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            nodes.add(instance(i));
+        }
+        return nodes;
+    }
+
+    private static String instance(int i) {
+        return "10.0.0." + i + ":8080";
+    }
+
+    private static long key(int k) {
+        return RendezvousRing.hash("device-" + k);
+    }
+}